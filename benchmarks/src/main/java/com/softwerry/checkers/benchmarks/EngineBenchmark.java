@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.benchmarks;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.CheckerAI;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of the rules engine and the AI, measured on a fixed middle
+ * game position. The selection overlay is private and measured through
+ * the Click calls that update it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    private GameEngine position;
+    private GameEngine selected;
+    private BitBoard packed;
+    private CheckerAI ai;
+    private int move;
+    private int mobility;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    @Setup
+    public void setUp() {
+        // reproducible middle game
+        Random rn = new Random(42);
+        position = new GameEngine();
+        for (int ply = 0; ply < 12; ply++) {
+            int count = MoveGenerator.generate(position, moves);
+            position.makeMove(moves[rn.nextInt(count)]);
+        }
+        mobility = MoveGenerator.generate(position, moves);
+        move = moves[0];
+
+        selected = new GameEngine(position);
+        selected.Click(Move.fromRow(move), Move.fromCol(move));
+        packed = new BitBoard(position);
+        ai = new CheckerAI();
+    }
+
+    /**
+     * Selection overlay, select a checker and deselect it
+     */
+    @Benchmark
+    public boolean clickSelect() {
+        position.Click(Move.fromRow(move), Move.fromCol(move));
+        return position.Click(Move.fromRow(move), Move.fromCol(move));
+    }
+
+    /**
+     * Full move through Click, including the copy of the game it plays on
+     */
+    @Benchmark
+    public boolean clickMove() {
+        GameEngine e = new GameEngine(position);
+        e.Click(Move.fromRow(move), Move.fromCol(move));
+        return e.Click(Move.toRow(move), Move.toCol(move));
+    }
+
+    /**
+     * Baseline for clickMove
+     */
+    @Benchmark
+    public GameEngine copyGame() {
+        return new GameEngine(position);
+    }
+
+    @Benchmark
+    public void getScore(Blackhole bh) {
+        bh.consume(position.getScore(GameEnum.RED));
+        bh.consume(position.getScore(GameEnum.BLACK));
+    }
+
+    /**
+     * Leaf evaluation from the incremental score
+     */
+    @Benchmark
+    public int evaluate() {
+        return position.getEvaluator().evaluate(position, mobility);
+    }
+
+    @Benchmark
+    public List<int[]> playablePieces() {
+        return ai.playablePieces(position, position.currentPlayer == GameEnum.RED);
+    }
+
+    @Benchmark
+    public List<int[]> nextStep() {
+        return ai.nextStep(selected);
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        return MoveGenerator.generate(position, moves);
+    }
+
+    @Benchmark
+    public int generateMovesBitBoard() {
+        return MoveGenerator.generate(packed, moves);
+    }
+
+    @Benchmark
+    public int makeUnmakeMove() {
+        position.makeMove(move);
+        return position.unmakeMove();
+    }
+
+    /**
+     * One random game from the start position through CheckerAI
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int randomSelfPlay() {
+        GameEngine e = new GameEngine();
+        int ply = 0;
+        while (ply < 200 && MoveGenerator.generate(e, moves) > 0) {
+            ai.RandomMove(e, e.currentPlayer == GameEnum.RED);
+            ply++;
+        }
+        return ply;
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Negamax alpha-beta search with iterative deepening.
+ *
+ * Every iteration searches one ply deeper until the depth, node or time
+ * budget runs out, the move of the last completed iteration is played.
+ * The game is explored in place with makeMove/unmakeMove, results are
+ * kept in a transposition table that can be shared between strategies.
+ * Leaves are scored by the game's Evaluator.
+ *
+ * With more than one thread the search is Lazy SMP: helper threads search
+ * copies of the same position with staggered depths and a rotated root
+ * move order, talking to each other only through the table. The deepest
+ * completed iteration of any thread is played.
+ */
+public final class AlphaBetaStrategy implements MoveStrategy {
+
+    /**
+     * score of a won position, faster wins score higher
+     */
+    public static final int WIN = 100000;
+    public static final int MAX_PLY = 64;
+    /**
+     * scores at or past this are wins or losses at a known distance, found
+     * by the search or read from the endgame database
+     */
+    public static final int KNOWN_WIN = WIN - MAX_PLY - 128;
+
+    private static final int INFINITY = WIN + 1;
+
+    /**
+     * search budget, 0 means no limit for nodes and time
+     */
+    public int maxDepth = MAX_PLY;
+    public long maxNodes = 0;
+    public long timeLimitMillis = 500;
+    /**
+     * search threads, 1 searches in the calling thread only
+     */
+    public int threads = 1;
+    /**
+     * exact values of positions with few checkers, null to search them
+     */
+    public EndgameDatabase endgames;
+
+    private final TranspositionTable table;
+    private final Worker main = new Worker(0);
+    private Worker[] helpers = new Worker[0];
+    private ExecutorService pool;
+
+    /**
+     * shared by all workers of a search
+     */
+    private volatile boolean stop;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile long deadline;
+    private long searchStart;
+    private boolean pondering;
+
+    private int lastDepth;
+    private int lastScore;
+
+    public AlphaBetaStrategy() {
+        table = new TranspositionTable(4);
+    }
+
+    public AlphaBetaStrategy(int maxDepth, long maxNodes, long timeLimitMillis) {
+        this(maxDepth, maxNodes, timeLimitMillis, new TranspositionTable(4));
+    }
+
+    public AlphaBetaStrategy(int maxDepth, long maxNodes, long timeLimitMillis,
+            TranspositionTable table) {
+        this.table = table;
+        this.maxDepth = Math.min(maxDepth, MAX_PLY);
+        this.maxNodes = maxNodes;
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    @Override
+    public int selectMove(GameEngine e) {
+        nodes.set(0);
+        stop = false;
+        synchronized (this) {
+            searchStart = System.nanoTime();
+            deadline = pondering ? Long.MAX_VALUE : timeLimit();
+        }
+        lastDepth = 0;
+        lastScore = 0;
+
+        int[] root = main.prepare(e);
+        if (main.rootCount < 2) {
+            return main.rootCount == 0 ? Move.NONE : root[0];
+        }
+        table.newSearch();
+
+        Future<?>[] running = startHelpers(e);
+        main.run();
+        stop = true;
+        Worker best = main;
+        for (int i = 0; i < running.length; i++) {
+            await(running[i]);
+            if (helpers[i].completedDepth > best.completedDepth) {
+                best = helpers[i];
+            }
+        }
+
+        lastDepth = best.completedDepth;
+        lastScore = best.bestScore;
+        return best.bestMove;
+    }
+
+    /**
+     * Search a position to a fixed depth in the calling thread, without
+     * time or node budget. Win scores count plies from this position. One
+     * strategy serves one thread at a time
+     *
+     * @param e game to search, left as it was
+     * @param depth
+     * @param alpha lower bound of the window
+     * @param beta upper bound of the window
+     * @return score for the player to move
+     */
+    public int searchScore(GameEngine e, int depth, int alpha, int beta) {
+        stop = false;
+        main.prepare(e);
+        int score = main.search(Math.min(depth, MAX_PLY - 1), alpha, beta, 0);
+        main.engine = null;
+        return score;
+    }
+
+    /**
+     * Ask a running selectMove to return soon, from any thread. The first
+     * iteration still completes so a move is always played
+     */
+    public void stop() {
+        stop = true;
+    }
+
+    /**
+     * Search without a time limit from the next selectMove on, until
+     * ponderHit or setPondering(false). Used to think on the opponent's time
+     *
+     * @param pondering
+     */
+    public synchronized void setPondering(boolean pondering) {
+        this.pondering = pondering;
+    }
+
+    public synchronized boolean isPondering() {
+        return pondering;
+    }
+
+    /**
+     * The pondered position came up, put the time limit back. Time spent
+     * pondering counts, so a long ponder returns at once
+     */
+    public synchronized void ponderHit() {
+        pondering = false;
+        deadline = timeLimit();
+    }
+
+    private long timeLimit() {
+        return timeLimitMillis > 0
+                ? searchStart + timeLimitMillis * 1000000L : Long.MAX_VALUE;
+    }
+
+    /**
+     * Stop helper threads, a later search starts them again
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * Depth of the last completed iteration
+     *
+     * @return
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * Score of the last completed iteration, for the player to move
+     *
+     * @return
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * Nodes visited by the last search, all threads
+     *
+     * @return
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    private Future<?>[] startHelpers(GameEngine e) {
+        int count = Math.max(0, threads - 1);
+        if (count == 0) {
+            return new Future<?>[0];
+        }
+        if (helpers.length != count) {
+            shutdown();
+            helpers = new Worker[count];
+            for (int i = 0; i < count; i++) {
+                helpers[i] = new Worker(i + 1);
+            }
+        }
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(count, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "alphabeta-helper");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        Future<?>[] running = new Future<?>[count];
+        for (int i = 0; i < count; i++) {
+            helpers[i].prepare(new GameEngine(e));
+            running[i] = pool.submit(helpers[i]);
+        }
+        return running;
+    }
+
+    private static void await(Future<?> f) {
+        try {
+            f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * win scores are stored relative to the stored position, not the root
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= KNOWN_WIN) {
+            return score + ply;
+        }
+        if (score <= -KNOWN_WIN) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= KNOWN_WIN) {
+            return score - ply;
+        }
+        if (score <= -KNOWN_WIN) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * One search thread with its own game and move buffers
+     */
+    private final class Worker implements Runnable {
+
+        private final int id;
+        private GameEngine engine;
+        private final BitBoard packed = new BitBoard();
+        private int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        private int rootCount;
+        private long localNodes;
+        private boolean aborted;
+        private int rootBest;
+
+        private int bestMove;
+        private int bestScore;
+        private int completedDepth;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Set up the game to search and generate root moves
+         */
+        int[] prepare(GameEngine e) {
+            int capacity = MoveGenerator.capacity(e.squaresPerSide);
+            if (moves[0].length < capacity) {
+                moves = new int[MAX_PLY + 1][capacity];
+            }
+            engine = e;
+            localNodes = 0;
+            aborted = false;
+            completedDepth = 0;
+            bestScore = 0;
+            rootCount = MoveGenerator.generate(e, moves[0]);
+            bestMove = rootCount == 0 ? Move.NONE : moves[0][0];
+
+            // helpers start with a different move to spread out
+            if (id > 0 && rootCount > 1) {
+                int[] root = moves[0];
+                int k = id % rootCount;
+                int first = root[0];
+                root[0] = root[k];
+                root[k] = first;
+            }
+            return moves[0];
+        }
+
+        @Override
+        public void run() {
+            int[] root = moves[0];
+            for (int depth = 1 + (id & 1); depth <= maxDepth; depth++) {
+                int score = searchRoot(root, depth);
+                if (aborted) {
+                    break;
+                }
+                bestMove = rootBest;
+                bestScore = score;
+                completedDepth = depth;
+
+                // search the best move first in the next iteration
+                for (int i = 0; i < rootCount; i++) {
+                    if (root[i] == bestMove) {
+                        root[i] = root[0];
+                        root[0] = bestMove;
+                        break;
+                    }
+                }
+                if (Math.abs(score) >= KNOWN_WIN) {
+                    break;
+                }
+            }
+            nodes.addAndGet(localNodes & 1023);
+            engine = null;
+        }
+
+        private int searchRoot(int[] root, int depth) {
+            GameEngine e = engine;
+            int alpha = -INFINITY;
+            rootBest = root[0];
+            for (int i = 0; i < rootCount; i++) {
+                e.makeMove(root[i]);
+                int score = -search(depth - 1, -INFINITY, -alpha, 1);
+                e.unmakeMove();
+                if (aborted) {
+                    return alpha;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    rootBest = root[i];
+                }
+            }
+            table.store(e.getHash(), depth, TranspositionTable.EXACT, alpha, rootBest);
+            return alpha;
+        }
+
+        private int search(int depth, int alpha, int beta, int ply) {
+            if ((++localNodes & 1023) == 0) {
+                checkBudget();
+            }
+            if (aborted) {
+                return 0;
+            }
+
+            GameEngine e = engine;
+            long hash = e.getHash();
+            long entry = table.probe(hash);
+            int ttMove = Move.NONE;
+            if (entry != 0) {
+                ttMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            if (endgames != null) {
+                int value = probe(e);
+                if (value != EndgameDatabase.NOT_FOUND) {
+                    return value == EndgameDatabase.DRAW ? 0
+                            : value > 0 ? WIN - ply - EndgameDatabase.plies(value)
+                            : -WIN + ply + EndgameDatabase.plies(value);
+                }
+            }
+
+            int[] list = moves[ply];
+            int count = MoveGenerator.generate(e, list);
+            if (count == 0) {
+                // no checkers or all blocked, lost
+                return -WIN + ply;
+            }
+            if (depth <= 0 || ply >= MAX_PLY) {
+                return e.getEvaluator().evaluate(e, count);
+            }
+
+            // table move first, only if it is legal here
+            if (ttMove != Move.NONE) {
+                for (int i = 1; i < count; i++) {
+                    if (list[i] == ttMove) {
+                        list[i] = list[0];
+                        list[0] = ttMove;
+                        break;
+                    }
+                }
+            }
+
+            int alphaOrig = alpha;
+            int best = Move.NONE;
+            for (int i = 0; i < count; i++) {
+                e.makeMove(list[i]);
+                int score = -search(depth - 1, -beta, -alpha, ply + 1);
+                e.unmakeMove();
+                if (aborted) {
+                    return 0;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    best = list[i];
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+
+            int bound = alpha >= beta ? TranspositionTable.LOWER
+                    : alpha > alphaOrig ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(hash, depth, bound, toTable(alpha, ply), best);
+            return alpha;
+        }
+
+        /**
+         * Database value of the searched game if it has few enough checkers
+         */
+        private int probe(GameEngine e) {
+            if (e.squaresPerSide != BitBoard.SIDE
+                    || e.getPieceCount(GameEnum.RED) + e.getPieceCount(GameEnum.BLACK)
+                    > endgames.getMaxPieces()) {
+                return EndgameDatabase.NOT_FOUND;
+            }
+            packed.load(e);
+            return endgames.probe(packed);
+        }
+
+        private void checkBudget() {
+            long total = nodes.addAndGet(1024);
+            // the main thread always finishes its first iteration
+            if (id == 0 && completedDepth == 0) {
+                return;
+            }
+            if (stop || (maxNodes > 0 && total >= maxNodes)
+                    || System.nanoTime() > deadline) {
+                aborted = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a MoveStrategy on a background thread.
+ *
+ * The game is copied when a search starts, so the caller keeps its own game
+ * while the engine thinks. Results go to a listener through an executor of
+ * the caller's choice, on Android one that posts to the UI thread. A result
+ * is dropped if the search was cancelled or another search started since.
+ * start, cancel and setStrategy are meant to be called from one thread.
+ *
+ * With an AlphaBetaStrategy, also behind a BookStrategy, the engine can
+ * ponder: while the opponent thinks it searches the position after the
+ * reply it expects. If start is then called on that position the running
+ * search carries on and answers within its normal time limit, counted from
+ * when pondering began. Any other position stops pondering, the new search
+ * still finds the pondered lines in the shared transposition table.
+ */
+public final class AsyncSearch {
+
+    public interface Listener {
+
+        /**
+         * Called through the result executor
+         *
+         * @param move selected move, Move.NONE if there was nothing to play
+         */
+        void onMoveSelected(int move);
+    }
+
+    /**
+     * read when a search is submitted, a running search keeps its strategy
+     */
+    private MoveStrategy strategy;
+    /**
+     * the alpha-beta search behind strategy, null if there is none
+     */
+    private final AlphaBetaStrategy search;
+    private final Executor results;
+    private final ExecutorService worker;
+    private Future<?> pending;
+
+    /**
+     * pondered position, and the listener or result of the ponder search,
+     * whichever shows up first. Guarded by this
+     */
+    private boolean pondering;
+    private long ponderHash;
+    private Listener ponderListener;
+    private int ponderResult;
+    private boolean ponderDone;
+
+    /**
+     * bumped by every start and cancel, a search only reports while it
+     * still owns the current value
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public AsyncSearch(MoveStrategy strategy, Executor results) {
+        this.strategy = strategy;
+        this.search = searchOf(strategy);
+        this.results = results;
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "async-search");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public MoveStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Use another strategy from the next search on, for example a
+     * BookStrategy once the book is loaded
+     *
+     * @param strategy with the same alpha-beta search behind it
+     */
+    public void setStrategy(MoveStrategy strategy) {
+        if (searchOf(strategy) != search) {
+            throw new IllegalArgumentException("strategy must keep the same search");
+        }
+        this.strategy = strategy;
+    }
+
+    private static AlphaBetaStrategy searchOf(MoveStrategy strategy) {
+        MoveStrategy inner = strategy instanceof BookStrategy
+                ? ((BookStrategy) strategy).getStrategy() : strategy;
+        return inner instanceof AlphaBetaStrategy ? (AlphaBetaStrategy) inner : null;
+    }
+
+    /**
+     * Search a snapshot of a game, cancelling any running search
+     *
+     * @param e game to search, not touched by the search
+     * @param listener receives the move unless cancelled
+     */
+    public void start(GameEngine e, final Listener listener) {
+        boolean hit;
+        synchronized (this) {
+            hit = pondering && e.getHash() == ponderHash;
+        }
+        if (hit) {
+            ponderHit(listener);
+            return;
+        }
+        cancel();
+        final int id = generation.get();
+        final GameEngine snapshot = new GameEngine(e);
+        final MoveStrategy current = strategy;
+        pending = worker.submit(new Runnable() {
+            public void run() {
+                if (generation.get() != id) {
+                    return;
+                }
+                final int move = current.selectMove(snapshot);
+                if (generation.get() != id) {
+                    return;
+                }
+                deliver(id, move, listener);
+            }
+        });
+    }
+
+    /**
+     * Search the position after the expected reply, until start or cancel
+     *
+     * @param e game with the opponent to move, not touched by the search
+     * @return false if the strategy can not ponder or no reply is known
+     */
+    public boolean ponder(GameEngine e) {
+        cancel();
+        if (search == null) {
+            return false;
+        }
+        int reply = expectedReply(e, search.getTable());
+        if (reply == Move.NONE) {
+            return false;
+        }
+        final GameEngine snapshot = new GameEngine(e);
+        snapshot.makeMove(reply);
+        final int id = generation.get();
+        final MoveStrategy current = strategy;
+
+        synchronized (this) {
+            pondering = true;
+            ponderHash = snapshot.getHash();
+            ponderListener = null;
+            ponderDone = false;
+        }
+        search.setPondering(true);
+        pending = worker.submit(new Runnable() {
+            public void run() {
+                if (generation.get() != id) {
+                    return;
+                }
+                int move = current.selectMove(snapshot);
+                Listener listener;
+                synchronized (AsyncSearch.this) {
+                    if (generation.get() != id) {
+                        return;
+                    }
+                    ponderResult = move;
+                    ponderDone = true;
+                    listener = ponderListener;
+                }
+                if (listener != null) {
+                    deliver(id, move, listener);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return true while searching the position after an expected reply
+     */
+    public synchronized boolean isPondering() {
+        return pondering;
+    }
+
+    /**
+     * Table move of the position if it is legal there
+     */
+    private static int expectedReply(GameEngine e, TranspositionTable table) {
+        long entry = table.probe(e.getHash());
+        if (entry == 0) {
+            return Move.NONE;
+        }
+        int reply = TranspositionTable.move(entry);
+        int[] moves = new int[MoveGenerator.capacity(e.squaresPerSide)];
+        int count = MoveGenerator.generate(e, moves);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == reply) {
+                return reply;
+            }
+        }
+        return Move.NONE;
+    }
+
+    private void ponderHit(Listener listener) {
+        int id = generation.get();
+        boolean done;
+        int move;
+        synchronized (this) {
+            pondering = false;
+            ponderListener = listener;
+            done = ponderDone;
+            move = ponderResult;
+        }
+        search.ponderHit();
+        if (done) {
+            deliver(id, move, listener);
+        }
+    }
+
+    private void deliver(final int id, final int move, final Listener listener) {
+        results.execute(new Runnable() {
+            public void run() {
+                if (generation.get() == id) {
+                    listener.onMoveSelected(move);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the running search, its result is never delivered
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (pondering) {
+                pondering = false;
+                search.setPondering(false);
+            }
+            ponderListener = null;
+        }
+        generation.incrementAndGet();
+        if (pending != null) {
+            // a cancelled future reports done even while it still runs
+            boolean running = !pending.isDone();
+            pending.cancel(false);
+            if (running && search != null) {
+                search.stop();
+            }
+            pending = null;
+        }
+    }
+
+    /**
+     * @return true while a search started here has not finished, pondering
+     * does not count
+     */
+    public boolean isSearching() {
+        return pending != null && !pending.isDone() && !isPondering();
+    }
+
+    /**
+     * Cancel and stop the background thread
+     */
+    public void shutdown() {
+        cancel();
+        worker.shutdownNow();
+    }
+}
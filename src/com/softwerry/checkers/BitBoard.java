@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+/**
+ * Packed checker position for the standard 8x8 board.
+ *
+ * Each of the 32 playable squares maps to one bit, square index is
+ * row * 4 + col / 2, using the same row/col convention as GameEngine.
+ */
+public final class BitBoard {
+
+    public static final int SIDE = 8;
+    public static final int SQUARES = 32;
+
+    /**
+     * row and col of every square index
+     */
+    public static final int[] ROW = new int[SQUARES];
+    public static final int[] COL = new int[SQUARES];
+
+    static {
+        for (int sq = 0; sq < SQUARES; sq++) {
+            ROW[sq] = sq >> 2;
+            COL[sq] = ((sq & 3) << 1) + (ROW[sq] % 2 == 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * black pieces, men and kings
+     */
+    public int black;
+    /**
+     * red pieces, men and kings
+     */
+    public int red;
+    /**
+     * kings of both sides
+     */
+    public int kings;
+    public GameEnum sideToMove = GameEnum.RED;
+
+    public BitBoard() {
+    }
+
+    public BitBoard(GameEngine e) {
+        load(e);
+    }
+
+    public BitBoard(BitBoard b) {
+        copyFrom(b);
+    }
+
+    /**
+     * Square index of a playable square
+     *
+     * @param row
+     * @param col
+     * @return square index or -1 for invalid squares
+     */
+    public static int square(int row, int col) {
+        if (row < 0 || row >= SIDE || col < 0 || col >= SIDE
+                || (row + col) % 2 == 0) {
+            return -1;
+        }
+        return (row << 2) + (col >> 1);
+    }
+
+    public void copyFrom(BitBoard b) {
+        black = b.black;
+        red = b.red;
+        kings = b.kings;
+        sideToMove = b.sideToMove;
+    }
+
+    /**
+     * Pack the position of a game, hints and highlights are dropped
+     *
+     * @param e game with an 8x8 board
+     */
+    public void load(GameEngine e) {
+        if (e.squaresPerSide != SIDE) {
+            throw new IllegalArgumentException(
+                    "BitBoard supports " + SIDE + "x" + SIDE + " boards only");
+        }
+        black = 0;
+        red = 0;
+        kings = 0;
+        for (int sq = 0; sq < SQUARES; sq++) {
+            Sprite s = e.At(ROW[sq], COL[sq]);
+            int bit = 1 << sq;
+            if (s == Sprite.BLACK_CHECKER || s == Sprite.BLACK_CHECKER_H) {
+                black |= bit;
+            } else if (s == Sprite.BLACK_CHECKER_S || s == Sprite.BLACK_CHECKER_S_H) {
+                black |= bit;
+                kings |= bit;
+            } else if (s == Sprite.RED_CHECKER || s == Sprite.RED_CHECKER_H) {
+                red |= bit;
+            } else if (s == Sprite.RED_CHECKER_S || s == Sprite.RED_CHECKER_S_H) {
+                red |= bit;
+                kings |= bit;
+            }
+        }
+        sideToMove = e.currentPlayer;
+    }
+
+    /**
+     * Unpack this position into a game, replacing its board
+     *
+     * @param e game with an 8x8 board
+     */
+    public void store(GameEngine e) {
+        if (e.squaresPerSide != SIDE) {
+            throw new IllegalArgumentException(
+                    "BitBoard supports " + SIDE + "x" + SIDE + " boards only");
+        }
+        e.setBoard(e.GenEmptyBoardState());
+        for (int sq = 0; sq < SQUARES; sq++) {
+            Sprite s = pieceAt(sq);
+            if (s != Sprite.EMPTY) {
+                e.Set(ROW[sq], COL[sq], s);
+            }
+        }
+        e.currentPlayer = sideToMove;
+    }
+
+    /**
+     * Play a move generated by MoveGenerator. Positions are a few ints, so
+     * take backs are done by keeping a copy
+     *
+     * @param move packed move
+     */
+    public void makeMove(int move) {
+        int from = 1 << ((Move.fromRow(move) << 2) + (Move.fromCol(move) >> 1));
+        int to = 1 << ((Move.toRow(move) << 2) + (Move.toCol(move) >> 1));
+        boolean king = (kings & from) != 0 || Move.isPromotion(move);
+
+        if (Move.isCapture(move)) {
+            int captured = ~(1 << ((Move.capturedRow(move) << 2)
+                    + (Move.capturedCol(move) >> 1)));
+            black &= captured;
+            red &= captured;
+            kings &= captured;
+        }
+        if (sideToMove == GameEnum.BLACK) {
+            black = (black & ~from) | to;
+            sideToMove = GameEnum.RED;
+        } else {
+            red = (red & ~from) | to;
+            sideToMove = GameEnum.BLACK;
+        }
+        kings &= ~from;
+        if (king) {
+            kings |= to;
+        }
+    }
+
+    /**
+     * Returns piece at a given square index
+     *
+     * @param sq
+     * @return Sprite, EMPTY if nothing is there
+     */
+    public Sprite pieceAt(int sq) {
+        int bit = 1 << sq;
+        if ((black & bit) != 0) {
+            return (kings & bit) != 0 ? Sprite.BLACK_CHECKER_S : Sprite.BLACK_CHECKER;
+        }
+        if ((red & bit) != 0) {
+            return (kings & bit) != 0 ? Sprite.RED_CHECKER_S : Sprite.RED_CHECKER;
+        }
+        return Sprite.EMPTY;
+    }
+
+    public int occupied() {
+        return black | red;
+    }
+
+    public int empty() {
+        return ~(black | red);
+    }
+
+    /**
+     * Number of pieces of a side
+     *
+     * @param side RED or BLACK
+     * @return
+     */
+    public int count(GameEnum side) {
+        return Integer.bitCount(side == GameEnum.RED ? red : black);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BitBoard)) {
+            return false;
+        }
+        BitBoard b = (BitBoard) o;
+        return black == b.black && red == b.red && kings == b.kings
+                && sideToMove == b.sideToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = black;
+        h = h * 31 + red;
+        h = h * 31 + kings;
+        return h * 31 + (sideToMove == GameEnum.BLACK ? 1 : 0);
+    }
+}
@@ -27,288 +27,249 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.LruCache;
 
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
- * Generates and caches bitmap images for various board pieces
+ * Generates bitmap images for various board pieces.
+ *
+ * All checker sprites of one square size live side by side in a single
+ * atlas bitmap, flat coloured squares are drawn as rects. The atlas is drawn
+ * on a background thread as soon as the factory is created, and the last
+ * few factories are kept by square size so a size seen before is ready at
+ * once. In low memory mode the atlas is RGB_565, checkers are drawn on
+ * their opaque square so no alpha is lost.
  */
 public class BoardAssetFactory {
 
+    private static final Sprite[] SPRITES = Sprite.values();
+
+    /**
+     * factories by square width, enough for both orientations and a resize
+     */
+    private static final LruCache<Integer, BoardAssetFactory> factories
+            = new LruCache<Integer, BoardAssetFactory>(4);
+    private static final ExecutorService warmUp
+            = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "board-assets");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
     private final int sideLength;
-    private final Map<Sprite, Bitmap> cache = new EnumMap<Sprite, Bitmap>(Sprite.class);
+    private final boolean lowMemory;
     private final float fHalfSide;
     private final float fCheckerR;
+    private final Bitmap atlas;
+    /**
+     * atlas rect of every sprite, null for flat coloured squares
+     */
+    private final Rect[] source = new Rect[SPRITES.length];
+    private final Rect target = new Rect();
+    private final Paint solid = new Paint();
+    private final Future<?> ready;
 
     public BoardAssetFactory(int s) {
+        this(s, false);
+    }
+
+    public BoardAssetFactory(int s, boolean lowMemory) {
         sideLength = s;
+        this.lowMemory = lowMemory;
         fHalfSide = sideLength / 2.0f;
         fCheckerR = fHalfSide * 0.8f;
-    }
 
-    public Bitmap BlackSquare() {
-        if (cache.containsKey(Sprite.EMPTY)) {
-            return cache.get(Sprite.EMPTY);
+        int count = 0;
+        for (int i = 0; i < SPRITES.length; i++) {
+            if (SolidColor(SPRITES[i]) == 0) {
+                source[i] = new Rect(count * sideLength, 0, (count + 1) * sideLength, sideLength);
+                count++;
+            }
         }
-        Bitmap square = Bitmap.createBitmap(
-                sideLength, sideLength, Bitmap.Config.ARGB_8888);
-        square.eraseColor(Color.DKGRAY);
-
-        cache.put(Sprite.EMPTY, square);
-        return square;
+        atlas = Bitmap.createBitmap(sideLength * count, sideLength,
+                lowMemory ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+        ready = warmUp.submit(new Runnable() {
+            public void run() {
+                DrawAtlas();
+            }
+        });
     }
 
-    public Bitmap WhiteSquare() {
-        if (cache.containsKey(Sprite.INVALID)) {
-            return cache.get(Sprite.INVALID);
+    /**
+     * Factory for a square size, shared by everyone asking for that size
+     *
+     * @param s square width in pixels
+     * @param lowMemory use the low memory bitmap config
+     * @return
+     */
+    public static synchronized BoardAssetFactory ForSize(int s, boolean lowMemory) {
+        BoardAssetFactory factory = factories.get(s);
+        if (factory == null || factory.lowMemory != lowMemory) {
+            factory = new BoardAssetFactory(s, lowMemory);
+            factories.put(s, factory);
         }
-        Bitmap square = Bitmap.createBitmap(
-                sideLength, sideLength, Bitmap.Config.ARGB_8888);
-        square.eraseColor(Color.WHITE);
-
-        cache.put(Sprite.INVALID, square);
-        return square;
+        return factory;
     }
 
-    public Bitmap NextMoveSquare() {
-        if (cache.containsKey(Sprite.EMPTY_NEXT)) {
-            return cache.get(Sprite.EMPTY_NEXT);
-        }
-        Bitmap square = Bitmap.createBitmap(
-                sideLength, sideLength, Bitmap.Config.ARGB_8888);
-        square.eraseColor(Color.GRAY);
+    /**
+     * @return true once every sprite is drawn
+     */
+    public boolean IsReady() {
+        return ready.isDone();
+    }
 
-        cache.put(Sprite.EMPTY_NEXT, square);
-        return square;
+    /**
+     * Run a task after the atlas is drawn, on the drawing thread
+     *
+     * @param r
+     */
+    public void WhenReady(Runnable r) {
+        warmUp.execute(r);
     }
 
-    public Bitmap ScoreSquare() {
-        if (cache.containsKey(Sprite.SCORE)) {
-            return cache.get(Sprite.SCORE);
+    /**
+     * Draw a sprite, waits for the atlas if it is not ready yet
+     *
+     * @param canvas
+     * @param e sprite to draw
+     * @param x left edge
+     * @param y top edge
+     * @param paint
+     */
+    public void DrawSquare(Canvas canvas, Sprite e, int x, int y, Paint paint) {
+        target.set(x, y, x + sideLength, y + sideLength);
+        Rect from = source[e.ordinal()];
+        if (from == null) {
+            solid.setColor(SolidColor(e));
+            canvas.drawRect(target, solid);
+            return;
         }
-        Bitmap square = Bitmap.createBitmap(
-                sideLength, sideLength, Bitmap.Config.ARGB_8888);
-        square.eraseColor(Color.LTGRAY);
-
-        cache.put(Sprite.SCORE, square);
-        return square;
+        AwaitReady();
+        canvas.drawBitmap(atlas, from, target, paint);
     }
 
-    public Bitmap RedChecker() {
-        if (cache.containsKey(Sprite.RED_CHECKER)) {
-            return cache.get(Sprite.RED_CHECKER);
+    /**
+     * Colour of squares without a checker
+     *
+     * @param e
+     * @return 0 for sprites with a checker
+     */
+    private static int SolidColor(Sprite e) {
+        switch (e) {
+            case INVALID:
+                return Color.WHITE;
+            case SCORE:
+                return Color.LTGRAY;
+            case EMPTY:
+                return Color.DKGRAY;
+            case EMPTY_NEXT:
+                return Color.GRAY;
+            default:
+                return 0;
         }
-
-        Bitmap square = Bitmap.createBitmap(
-                sideLength, sideLength, Bitmap.Config.ARGB_8888);
-        square.eraseColor(Color.DKGRAY);
-
-        Paint red = new Paint(Paint.ANTI_ALIAS_FLAG);
-        red.setStyle(Paint.Style.FILL);
-        red.setColor(Color.RED);
-        red.setShadowLayer(1.5f, 0.0f, 2.0f, Color.BLACK);
-        Canvas c = new Canvas(square);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, red);
-
-        Paint white = new Paint(Paint.ANTI_ALIAS_FLAG);
-        white.setStyle(Paint.Style.STROKE);
-        white.setColor(Color.LTGRAY);
-        white.setStrokeWidth(1.5f);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, white);
-
-        cache.put(Sprite.RED_CHECKER, square);
-        return square;
     }
 
-    public Bitmap RedCheckerHighlighted() {
-        if (cache.containsKey(Sprite.RED_CHECKER_H)) {
-            return cache.get(Sprite.RED_CHECKER_H);
+    private void AwaitReady() {
+        try {
+            ready.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
         }
-
-        // start with red checker
-        Bitmap square = Bitmap.createBitmap(RedChecker());
-        Canvas c = new Canvas(square);
-
-        // highlight
-        Paint highlight = new Paint(Paint.ANTI_ALIAS_FLAG);
-        highlight.setStyle(Paint.Style.STROKE);
-        highlight.setStrokeWidth(1.5f);
-        highlight.setColor(Color.WHITE);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, highlight);
-
-        cache.put(Sprite.RED_CHECKER_H, square);
-        return square;
     }
 
-    public Bitmap RedSuperChecker() {
-        if (cache.containsKey(Sprite.RED_CHECKER_S)) {
-            return cache.get(Sprite.RED_CHECKER_S);
+    private void DrawAtlas() {
+        Canvas c = new Canvas(atlas);
+        for (int i = 0; i < SPRITES.length; i++) {
+            if (source[i] == null) {
+                continue;
+            }
+            c.save();
+            c.clipRect(source[i]);
+            c.translate(source[i].left, 0);
+            DrawSprite(c, SPRITES[i]);
+            c.restore();
         }
-        // start with red checker
-        Bitmap square = Bitmap.createBitmap(RedChecker());
-        Canvas c = new Canvas(square);
-
-        // mark
-        Paint superMark = new Paint(Paint.ANTI_ALIAS_FLAG);
-        superMark.setStyle(Paint.Style.STROKE);
-        superMark.setStrokeWidth(2.0f);
-        superMark.setColor(Color.YELLOW);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR * 0.1f, superMark);
-
-        cache.put(Sprite.RED_CHECKER_S, square);
-        return square;
     }
 
-    public Bitmap RedSuperCheckerHighlighted() {
-        if (cache.containsKey(Sprite.RED_CHECKER_S_H)) {
-            return cache.get(Sprite.RED_CHECKER_S_H);
+    private void DrawSprite(Canvas c, Sprite e) {
+        switch (e) {
+            case RED_CHECKER:
+                Checker(c, Color.RED);
+                break;
+            case RED_CHECKER_H:
+                Checker(c, Color.RED);
+                Highlight(c);
+                break;
+            case RED_CHECKER_S:
+                Checker(c, Color.RED);
+                SuperMark(c);
+                break;
+            case RED_CHECKER_S_H:
+                Checker(c, Color.RED);
+                SuperMark(c);
+                Highlight(c);
+                break;
+            case BLACK_CHECKER:
+                Checker(c, Color.BLACK);
+                break;
+            case BLACK_CHECKER_H:
+                Checker(c, Color.BLACK);
+                Highlight(c);
+                break;
+            case BLACK_CHECKER_S:
+                Checker(c, Color.BLACK);
+                SuperMark(c);
+                break;
+            case BLACK_CHECKER_S_H:
+                Checker(c, Color.BLACK);
+                SuperMark(c);
+                Highlight(c);
+                break;
+            default:
+                break;
         }
-        // start with red super checker
-        Bitmap square = Bitmap.createBitmap(RedSuperChecker());
-        Canvas c = new Canvas(square);
-
-        // highlight
-        Paint highlight = new Paint(Paint.ANTI_ALIAS_FLAG);
-        highlight.setStyle(Paint.Style.STROKE);
-        highlight.setStrokeWidth(1.5f);
-        highlight.setColor(Color.WHITE);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, highlight);
-
-        cache.put(Sprite.RED_CHECKER_S_H, square);
-        return square;
     }
 
-    public Bitmap BlackChecker() {
-        if (cache.containsKey(Sprite.BLACK_CHECKER)) {
-            return cache.get(Sprite.BLACK_CHECKER);
-        }
-        Bitmap square = Bitmap.createBitmap(
-                sideLength, sideLength, Bitmap.Config.ARGB_8888);
-        square.eraseColor(Color.DKGRAY);
+    private void Checker(Canvas c, int color) {
+        c.drawColor(Color.DKGRAY);
 
-        Paint black = new Paint(Paint.ANTI_ALIAS_FLAG);
-        black.setStyle(Paint.Style.FILL);
-        black.setColor(Color.BLACK);
-        black.setShadowLayer(1.5f, 0.0f, 2.0f, Color.BLACK);
-        Canvas c = new Canvas(square);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, black);
+        Paint fill = new Paint(Paint.ANTI_ALIAS_FLAG);
+        fill.setStyle(Paint.Style.FILL);
+        fill.setColor(color);
+        fill.setShadowLayer(1.5f, 0.0f, 2.0f, Color.BLACK);
+        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, fill);
 
         Paint border = new Paint(Paint.ANTI_ALIAS_FLAG);
         border.setStyle(Paint.Style.STROKE);
         border.setColor(Color.LTGRAY);
         border.setStrokeWidth(1.5f);
         c.drawCircle(fHalfSide, fHalfSide, fCheckerR, border);
-
-        cache.put(Sprite.BLACK_CHECKER, square);
-        return square;
     }
 
-    public Bitmap BlackCheckerHighlighted() {
-        if (cache.containsKey(Sprite.BLACK_CHECKER_H)) {
-            return cache.get(Sprite.BLACK_CHECKER_H);
-        }
-
-        // start with black checker
-        Bitmap square = Bitmap.createBitmap(BlackChecker());
-        Canvas c = new Canvas(square);
-
-        // highlight
+    private void Highlight(Canvas c) {
         Paint highlight = new Paint(Paint.ANTI_ALIAS_FLAG);
         highlight.setStyle(Paint.Style.STROKE);
         highlight.setStrokeWidth(1.5f);
         highlight.setColor(Color.WHITE);
         c.drawCircle(fHalfSide, fHalfSide, fCheckerR, highlight);
-
-        cache.put(Sprite.BLACK_CHECKER_H, square);
-        return square;
     }
 
-    public Bitmap BlackSuperChecker() {
-        if (cache.containsKey(Sprite.BLACK_CHECKER_S)) {
-            return cache.get(Sprite.BLACK_CHECKER_S);
-        }
-
-        // start with black checker
-        Bitmap square = Bitmap.createBitmap(BlackChecker());
-        Canvas c = new Canvas(square);
-
-        // mark
+    private void SuperMark(Canvas c) {
         Paint superMark = new Paint(Paint.ANTI_ALIAS_FLAG);
         superMark.setStyle(Paint.Style.STROKE);
         superMark.setStrokeWidth(2.0f);
         superMark.setColor(Color.YELLOW);
         c.drawCircle(fHalfSide, fHalfSide, fCheckerR * 0.1f, superMark);
-
-        cache.put(Sprite.BLACK_CHECKER_S, square);
-        return square;
-    }
-
-    public Bitmap BlackSuperCheckerHighlighted() {
-        if (cache.containsKey(Sprite.BLACK_CHECKER_S_H)) {
-            return cache.get(Sprite.BLACK_CHECKER_S_H);
-        }
-
-        // start with black checker
-        Bitmap square = Bitmap.createBitmap(BlackSuperChecker());
-        Canvas c = new Canvas(square);
-
-        // highlight
-        Paint highlight = new Paint(Paint.ANTI_ALIAS_FLAG);
-        highlight.setStyle(Paint.Style.STROKE);
-        highlight.setStrokeWidth(1.5f);
-        highlight.setColor(Color.WHITE);
-        c.drawCircle(fHalfSide, fHalfSide, fCheckerR, highlight);
-
-        cache.put(Sprite.BLACK_CHECKER_S_H, square);
-        return square;
-    }
-
-    public Bitmap GetSquare(Sprite e) {
-        if (e == Sprite.INVALID) {
-            return WhiteSquare();
-        }
-
-        if (e == Sprite.SCORE) {
-            return ScoreSquare();
-        }
-
-        if (e == Sprite.RED_CHECKER) {
-            return RedChecker();
-        }
-
-        if (e == Sprite.RED_CHECKER_S) {
-            return RedSuperChecker();
-        }
-
-        if (e == Sprite.RED_CHECKER_H) {
-            return RedCheckerHighlighted();
-        }
-
-        if (e == Sprite.RED_CHECKER_S_H) {
-            return RedSuperCheckerHighlighted();
-        }
-
-        if (e == Sprite.BLACK_CHECKER) {
-            return BlackChecker();
-        }
-
-        if (e == Sprite.BLACK_CHECKER_H) {
-            return BlackCheckerHighlighted();
-        }
-
-        if (e == Sprite.BLACK_CHECKER_S) {
-            return BlackSuperChecker();
-        }
-
-        if (e == Sprite.BLACK_CHECKER_S_H) {
-            return BlackSuperCheckerHighlighted();
-        }
-
-        if (e == Sprite.EMPTY_NEXT) {
-            return NextMoveSquare();
-        }
-        return BlackSquare();
     }
 
     public Bitmap GenBlackScore(GameEngine ge) {
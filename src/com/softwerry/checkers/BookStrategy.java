@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+/**
+ * Plays book moves while the game is in the opening book and asks another
+ * strategy once it is not
+ */
+public final class BookStrategy implements MoveStrategy {
+
+    private final OpeningBook book;
+    private final MoveStrategy strategy;
+
+    /**
+     * @param book
+     * @param strategy used for positions not in the book
+     */
+    public BookStrategy(OpeningBook book, MoveStrategy strategy) {
+        this.book = book;
+        this.strategy = strategy;
+    }
+
+    public OpeningBook getBook() {
+        return book;
+    }
+
+    public MoveStrategy getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public int selectMove(GameEngine e) {
+        int move = book.probe(e);
+        return move != Move.NONE ? move : strategy.selectMove(e);
+    }
+}
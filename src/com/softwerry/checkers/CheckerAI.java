@@ -31,31 +31,73 @@ import java.util.Random;
  */
 public final class CheckerAI {
 
+    private final Random rn = new Random();
+    private int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private MoveStrategy strategy;
+
+    public CheckerAI() {
+        strategy = new RandomStrategy();
+    }
+
+    public CheckerAI(MoveStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public MoveStrategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(MoveStrategy strategy) {
+        this.strategy = strategy;
+    }
+
     /**
-     * Very dump AI, randomly picks a checker and randomly moves it
+     * Let the strategy pick a move for the player to move and play it
      *
      * @param e current game which contains current game state
-     * @param isRed flag for red or black side
+     * @return false if there was nothing to play
      */
-    public void RandomMove(GameEngine e, boolean isRed) {
-        Random rn = new Random();
+    public boolean PlayMove(GameEngine e) {
+        return PlayMove(e, strategy.selectMove(e));
+    }
 
-        // click random checker that can move
-        LinkedList<int[]> playPieces = playablePieces(e, isRed);
-        if (playPieces.size() < 1) {
-            return;
+    /**
+     * Play a move selected earlier, for example by an AsyncSearch
+     *
+     * @param e current game which contains current game state
+     * @param move packed move
+     * @return false if the move could not be played
+     */
+    public boolean PlayMove(GameEngine e, int move) {
+        if (move == Move.NONE) {
+            return false;
         }
 
-        int[] piece = playPieces.get(rn.nextInt(playPieces.size()));
-        e.Click(piece[0], piece[1]);
+        // click the checker, then its destination
+        e.Click(Move.fromRow(move), Move.fromCol(move));
+        return e.Click(Move.toRow(move), Move.toCol(move));
+    }
 
-        // click random next move
-        LinkedList<int[]> nextSteps = nextStep(e);
-        if (nextSteps.size() < 1) {
+    /**
+     * Very dump AI, randomly picks one of the legal moves
+     *
+     * @param e current game which contains current game state
+     * @param isRed flag for red or black side
+     */
+    public void RandomMove(GameEngine e, boolean isRed) {
+        if (moves.length < MoveGenerator.capacity(e.squaresPerSide)) {
+            moves = new int[MoveGenerator.capacity(e.squaresPerSide)];
+        }
+        int count = MoveGenerator.generate(e,
+                isRed ? GameEnum.RED : GameEnum.BLACK, moves);
+        if (count < 1) {
             return;
         }
-        int[] next = nextSteps.get(rn.nextInt(nextSteps.size()));
-        e.Click(next[0], next[1]);
+
+        // click the checker, then its destination
+        int move = moves[rn.nextInt(count)];
+        e.Click(Move.fromRow(move), Move.fromCol(move));
+        e.Click(Move.toRow(move), Move.toCol(move));
     }
 
     /**
@@ -86,16 +128,13 @@ public final class CheckerAI {
      */
     public LinkedList<int[]> playablePieces(GameEngine e, boolean isRed) {
         LinkedList<int[]> result = new LinkedList<int[]>();
-        for (int row = 0; row < e.squaresPerSide; row++) {
-            for (int col = 0; col < e.squaresPerSide; col++) {
-                if (isRed && e.isRed(row, col)
-                        && validRedMoves(e, row, col)) {
-                    result.add(new int[]{row, col});
-                }
-                if (!isRed && e.isBlack(row, col)
-                        && validBlackMoves(e, row, col)) {
-                    result.add(new int[]{row, col});
-                }
+        GameEnum side = isRed ? GameEnum.RED : GameEnum.BLACK;
+        for (int i = 0; i < e.getPieceCount(side); i++) {
+            int square = e.getPieceSquare(side, i);
+            int row = square / e.squaresPerSide;
+            int col = square % e.squaresPerSide;
+            if (isRed ? validRedMoves(e, row, col) : validBlackMoves(e, row, col)) {
+                result.add(new int[]{row, col});
             }
         }
         return result;
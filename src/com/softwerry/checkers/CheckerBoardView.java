@@ -23,33 +23,76 @@
  */
 package com.softwerry.checkers;
 
+import android.app.ActivityManager;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
 
 /**
  * Checker board View
  */
 public final class CheckerBoardView extends View {
 
+    /**
+     * heap limit in MB at or below which bitmaps are kept small
+     */
+    public static final int LOW_MEMORY_CLASS = 32;
+    /**
+     * opening book built by OpeningBookBuilder, played without searching
+     */
+    public static final String BOOK_ASSET = "book.bin";
+    private static final String TAG = "CheckerBoardView";
+
     private BoardAssetFactory squareFactory;
+    private final boolean lowMemory;
     private final int squaresPerSide = 8;
     public int squareWidth;
     private final Paint paint = new Paint();
     public AlertDialog currentAlertDialog = null;
 
     public GameEngine gameEngine;
-    public CheckerAI randomAI;
+    public CheckerAI checkerAI;
+    /**
+     * searches for checkerAI off the UI thread
+     */
+    public AsyncSearch aiSearch;
+    /**
+     * think on the player's time
+     */
+    public boolean ponder = true;
 
     public int tx = 0;
     public int ty = 0;
 
+    /**
+     * board as last drawn, only squares that changed since are painted
+     * again. Dropped when the square size changes
+     */
+    private Bitmap boardLayer;
+    private Canvas layerCanvas;
+    private Sprite[][] drawn;
+    private final Rect dirty = new Rect();
+    private int shownRedScore = -1;
+    private int shownBlackScore = -1;
+    /**
+     * a redraw waits for the sprites to be drawn, so frames in the meantime
+     * do not queue another one
+     */
+    private volatile boolean redrawQueued;
+
     /**
      * Instantiate board View, given the screen size and activity context
      *
@@ -67,13 +110,71 @@ public final class CheckerBoardView extends View {
         // find translation points for centering the board
         tx = (int) Math.round(width / 2.0 - squareWidth * squaresPerSide / 2.0);
         ty = (int) Math.round(height / 2.0 - squareWidth * squaresPerSide / 2.0);
-        squareFactory = new BoardAssetFactory(squareWidth);
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        lowMemory = am.getMemoryClass() <= LOW_MEMORY_CLASS;
+        squareFactory = BoardAssetFactory.ForSize(squareWidth, lowMemory);
         gameEngine = new GameEngine(squaresPerSide);
-        randomAI = new CheckerAI();
+        MoveStrategy strategy = new AlphaBetaStrategy(AlphaBetaStrategy.MAX_PLY, 0, 300);
+        checkerAI = new CheckerAI(strategy);
+        aiSearch = new AsyncSearch(strategy, new Executor() {
+            public void execute(Runnable r) {
+                post(r);
+            }
+        });
+        LoadBook(context, strategy);
 
         AddClickListener();
     }
 
+    /**
+     * Read the opening book off the UI thread, the AI plays from it once it
+     * is loaded
+     *
+     * @param context
+     * @param strategy used for positions not in the book
+     */
+    private void LoadBook(final Context context, final MoveStrategy strategy) {
+        Thread loader = new Thread(new Runnable() {
+            public void run() {
+                final OpeningBook book = ReadBook(context);
+                if (book == null) {
+                    return;
+                }
+                post(new Runnable() {
+                    public void run() {
+                        MoveStrategy withBook = new BookStrategy(book, strategy);
+                        checkerAI.setStrategy(withBook);
+                        aiSearch.setStrategy(withBook);
+                    }
+                });
+            }
+        }, "opening-book");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Read the opening book from the app assets
+     *
+     * @param context
+     * @return null if the app has no book or it can not be read
+     */
+    private static OpeningBook ReadBook(Context context) {
+        try {
+            InputStream in = context.getAssets().open(BOOK_ASSET);
+            try {
+                return OpeningBook.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException ex) {
+            return null;
+        } catch (IOException ex) {
+            Log.w(TAG, "opening book not loaded", ex);
+            return null;
+        }
+    }
+
     /**
      * Add click listener
      */
@@ -82,7 +183,7 @@ public final class CheckerBoardView extends View {
         setOnTouchListener(new View.OnTouchListener() {
             @Override
             public boolean onTouch(View v, MotionEvent event) {
-                if (gameEngine.gameState != GameEnum.PLAY) {
+                if (gameEngine.gameState != GameEnum.PLAY || aiSearch.isSearching()) {
                     return false;
                 }
 
@@ -90,16 +191,14 @@ public final class CheckerBoardView extends View {
                     int row = getSquareRow(event);
                     int col = getSquareCol(event);
                     if (gameEngine.Click(row, col)) {
-                        if (gameEngine.getScore(GameEnum.RED) > 11) {
-                            ShowAlert(v, "Red win!");
-                        }
-                        randomAI.RandomMove(gameEngine, false);
-                        if (gameEngine.getScore(GameEnum.BLACK) > 11) {
-                            ShowAlert(v, "Black win!");
+                        if (gameEngine.gameState == GameEnum.GAME_OVER) {
+                            ShowWinner(v, gameEngine);
+                        } else if (gameEngine.gameState == GameEnum.PLAY) {
+                            StartAIMove(v);
                         }
                     }
                 }
-                v.invalidate();
+                InvalidateChanged();
                 return true;
             }
 
@@ -123,6 +222,37 @@ public final class CheckerBoardView extends View {
         });
     }
 
+    /**
+     * Let the AI think in the background and play its move on the UI thread
+     *
+     * @param v
+     */
+    public void StartAIMove(final View v) {
+        final GameEngine game = gameEngine;
+        aiSearch.start(game, new AsyncSearch.Listener() {
+            public void onMoveSelected(int move) {
+                checkerAI.PlayMove(game, move);
+                if (game.gameState == GameEnum.GAME_OVER) {
+                    ShowWinner(v, game);
+                } else if (ponder && game.gameState == GameEnum.PLAY) {
+                    aiSearch.ponder(game);
+                }
+                InvalidateChanged();
+            }
+        });
+    }
+
+    /**
+     * Announce the side that made the last move, after it ended the game
+     *
+     * @param v
+     * @param game
+     */
+    public void ShowWinner(View v, GameEngine game) {
+        // makeMove already passed the turn to the side that lost
+        ShowAlert(v, game.currentPlayer == GameEnum.RED ? "Black win!" : "Red win!");
+    }
+
     /**
      * Display Alert box
      *
@@ -134,14 +264,21 @@ public final class CheckerBoardView extends View {
                 .setTitle(s)
                 .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
                     public void onClick(DialogInterface dialog, int which) {
+                        aiSearch.cancel();
                         gameEngine = new GameEngine(squaresPerSide);
-                        v.invalidate();
+                        InvalidateChanged();
                     }
                 })
                 .setIcon(android.R.drawable.star_on)
                 .show();
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        aiSearch.shutdown();
+    }
+
     /**
      * Resize the board on device flip
      *
@@ -159,7 +296,8 @@ public final class CheckerBoardView extends View {
             // find translation points for centering the board
             tx = (int) Math.round(width / 2.0 - squareWidth * squaresPerSide / 2.0);
             ty = (int) Math.round(height / 2.0 - squareWidth * squaresPerSide / 2.0);
-            squareFactory = new BoardAssetFactory(squareWidth);
+            squareFactory = BoardAssetFactory.ForSize(squareWidth, lowMemory);
+            boardLayer = null;
             SimpleCheckersActivity.blackScore.setRotation(180);
         } else if (newConfig.orientation == Configuration.ORIENTATION_LANDSCAPE) {
             int width = newConfig.screenWidthDp;
@@ -170,11 +308,35 @@ public final class CheckerBoardView extends View {
             // find translation points for centering the board
             tx = (int) Math.round(width / 2.0 - squareWidth * squaresPerSide / 2.0);
             ty = (int) Math.round(height / 2.0 - squareWidth * squaresPerSide / 2.0);
-            squareFactory = new BoardAssetFactory(squareWidth);
+            squareFactory = BoardAssetFactory.ForSize(squareWidth, lowMemory);
+            boardLayer = null;
             SimpleCheckersActivity.blackScore.setRotation(360);
         }
     }
 
+    /**
+     * Invalidate the squares that differ from the last drawn board
+     */
+    public void InvalidateChanged() {
+        if (boardLayer == null) {
+            invalidate();
+            return;
+        }
+        dirty.setEmpty();
+        for (int row = 0; row < squaresPerSide; row++) {
+            for (int col = 0; col < squaresPerSide; col++) {
+                if (gameEngine.At(row, col) != drawn[row][col]) {
+                    int left = tx + row * squareWidth;
+                    int top = ty + col * squareWidth;
+                    dirty.union(left, top, left + squareWidth, top + squareWidth);
+                }
+            }
+        }
+        if (!dirty.isEmpty()) {
+            invalidate(dirty);
+        }
+    }
+
     /**
      * Render game board
      *
@@ -184,17 +346,48 @@ public final class CheckerBoardView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        if (!squareFactory.IsReady()) {
+            // sprites for a new size are still being drawn
+            if (!redrawQueued) {
+                redrawQueued = true;
+                squareFactory.WhenReady(new Runnable() {
+                    public void run() {
+                        redrawQueued = false;
+                        postInvalidate();
+                    }
+                });
+            }
+            return;
+        }
+        if (boardLayer == null) {
+            int side = squareWidth * squaresPerSide;
+            boardLayer = Bitmap.createBitmap(side, side,
+                    lowMemory ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+            layerCanvas = new Canvas(boardLayer);
+            drawn = new Sprite[squaresPerSide][squaresPerSide];
+        }
         for (int row = 0; row < squaresPerSide; row++) {
             for (int col = 0; col < squaresPerSide; col++) {
-                canvas.drawBitmap(squareFactory.GetSquare(gameEngine.getState()[row][col]),
-                        tx + row * squareWidth, ty + col * squareWidth, paint);
+                Sprite s = gameEngine.At(row, col);
+                if (s != drawn[row][col]) {
+                    squareFactory.DrawSquare(layerCanvas, s,
+                            row * squareWidth, col * squareWidth, paint);
+                    drawn[row][col] = s;
+                }
             }
         }
+        canvas.drawBitmap(boardLayer, tx, ty, paint);
 
         // update the score
-        SimpleCheckersActivity.redScore
-                .setText("Score: " + gameEngine.getScore(GameEnum.RED));
-        SimpleCheckersActivity.blackScore
-                .setText("Score: " + gameEngine.getScore(GameEnum.BLACK));
+        int red = gameEngine.getScore(GameEnum.RED);
+        if (red != shownRedScore) {
+            SimpleCheckersActivity.redScore.setText("Score: " + red);
+            shownRedScore = red;
+        }
+        int black = gameEngine.getScore(GameEnum.BLACK);
+        if (black != shownBlackScore) {
+            SimpleCheckersActivity.blackScore.setText("Score: " + black);
+            shownBlackScore = black;
+        }
     }
 }
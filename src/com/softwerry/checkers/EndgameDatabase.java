@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Win, loss and draw values of 8x8 positions with few checkers, read from
+ * a memory mapped file so every process shares the same pages.
+ *
+ * Positions are grouped in slices by black men, black kings, red men and
+ * red kings. Inside a slice a position is numbered by the combinatorial
+ * rank of its black men among all 32 squares, then red men among the
+ * squares left, then black kings, then red kings. Each position has one
+ * byte per side to move: 0 draw, v > 0 win in v plies, v < 0 loss in
+ * -v - 1 plies. Longer distances are stored as 127 plies with the right
+ * sign. Men on their promotion column can not occur and hold 0.
+ *
+ * File: magic "CKEG", version byte, max pieces byte, slice count, then
+ * per slice its four counts as bytes and the int offset of its values.
+ * Values follow, red to move first for each position. Big endian.
+ */
+public final class EndgameDatabase {
+
+    static final int MAGIC = 0x434B4547;
+    static final int VERSION = 1;
+
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    public static final int DRAW = 0;
+
+    /**
+     * most checkers of one kind a slice key can hold
+     */
+    private static final int KINDS = 13;
+    private static final long[][] CHOOSE = new long[BitBoard.SQUARES + 1][BitBoard.SQUARES + 1];
+    /**
+     * squares where black or red men would already be kings
+     */
+    private static final int BLACK_LAST;
+    private static final int RED_LAST;
+
+    static {
+        for (int n = 0; n <= BitBoard.SQUARES; n++) {
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + (k < n ? CHOOSE[n - 1][k] : 0);
+            }
+        }
+        int black = 0;
+        int red = 0;
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            if (BitBoard.COL[sq] == BitBoard.SIDE - 1) {
+                black |= 1 << sq;
+            }
+            if (BitBoard.COL[sq] == 0) {
+                red |= 1 << sq;
+            }
+        }
+        BLACK_LAST = black;
+        RED_LAST = red;
+    }
+
+    private final MappedByteBuffer data;
+    private final int maxPieces;
+    private final int[] offsets = new int[KINDS * KINDS * KINDS * KINDS];
+
+    private EndgameDatabase(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.limit() < 10 || data.getInt(0) != MAGIC) {
+            throw new IOException("not an endgame database");
+        }
+        if (data.get(4) != VERSION) {
+            throw new IOException("unsupported endgame database version " + data.get(4));
+        }
+        maxPieces = data.get(5);
+        int count = data.getInt(6);
+        Arrays.fill(offsets, -1);
+        for (int i = 0; i < count; i++) {
+            int at = 10 + i * 8;
+            offsets[key(data.get(at), data.get(at + 1), data.get(at + 2), data.get(at + 3))]
+                    = data.getInt(at + 4);
+        }
+    }
+
+    /**
+     * Map a database file read only
+     *
+     * @param file written by write
+     * @return
+     * @throws IOException
+     */
+    public static EndgameDatabase open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new EndgameDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Most checkers on the board covered by the database
+     *
+     * @return
+     */
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * Value of a position, safe to call from several threads
+     *
+     * @param b position with its side to move
+     * @return DRAW, v > 0 win in v plies, v < 0 loss in -v - 1 plies, or
+     * NOT_FOUND if the position is not in the database
+     */
+    public int probe(BitBoard b) {
+        int bk = Integer.bitCount(b.black & b.kings);
+        int bm = Integer.bitCount(b.black) - bk;
+        int rk = Integer.bitCount(b.red & b.kings);
+        int rm = Integer.bitCount(b.red) - rk;
+        if (bm + bk == 0 || rm + rk == 0 || bm + bk + rm + rk > maxPieces) {
+            return NOT_FOUND;
+        }
+        int offset = offsets[key(bm, bk, rm, rk)];
+        if (offset < 0) {
+            return NOT_FOUND;
+        }
+        return data.get((int) (offset + index(b) * 2 + (b.sideToMove == GameEnum.BLACK ? 1 : 0)));
+    }
+
+    public static int win(int plies) {
+        return Math.min(plies, 127);
+    }
+
+    public static int loss(int plies) {
+        return -Math.min(plies + 1, 128);
+    }
+
+    /**
+     * Plies to the end of a won or lost game
+     *
+     * @param value from probe, not DRAW
+     * @return
+     */
+    public static int plies(int value) {
+        return value > 0 ? value : -value - 1;
+    }
+
+    /**
+     * Slices with both sides on the board and up to maxPieces checkers, in
+     * an order where captures and promotions only lead to earlier slices
+     *
+     * @param maxPieces
+     * @return black men, black kings, red men, red kings per slice
+     */
+    public static List<int[]> slices(int maxPieces) {
+        List<int[]> slices = new ArrayList<int[]>();
+        for (int total = 2; total <= maxPieces; total++) {
+            for (int men = 0; men <= total; men++) {
+                for (int bm = 0; bm <= men; bm++) {
+                    int rm = men - bm;
+                    for (int bk = 0; bk <= total - men; bk++) {
+                        int rk = total - men - bk;
+                        if (bm + bk > 0 && rm + rk > 0) {
+                            slices.add(new int[]{bm, bk, rm, rk});
+                        }
+                    }
+                }
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Number of positions of a slice, for one side to move
+     */
+    public static long sliceSize(int bm, int bk, int rm, int rk) {
+        int free = BitBoard.SQUARES;
+        long size = CHOOSE[free][bm];
+        free -= bm;
+        size *= CHOOSE[free][rm];
+        free -= rm;
+        size *= CHOOSE[free][bk];
+        free -= bk;
+        return size * CHOOSE[free][rk];
+    }
+
+    /**
+     * Number of a position inside its slice
+     *
+     * @param b
+     * @return
+     */
+    public static long index(BitBoard b) {
+        int bm = b.black & ~b.kings;
+        int rm = b.red & ~b.kings;
+        int bk = b.black & b.kings;
+        int rk = b.red & b.kings;
+        int free = -1;
+        long index = rank(bm, free);
+        free &= ~bm;
+        index = index * CHOOSE[Integer.bitCount(free)][Integer.bitCount(rm)] + rank(rm, free);
+        free &= ~rm;
+        index = index * CHOOSE[Integer.bitCount(free)][Integer.bitCount(bk)] + rank(bk, free);
+        free &= ~bk;
+        return index * CHOOSE[Integer.bitCount(free)][Integer.bitCount(rk)] + rank(rk, free);
+    }
+
+    /**
+     * Position with a given number, the inverse of index
+     *
+     * @param slice black men, black kings, red men, red kings
+     * @param index from 0 to sliceSize - 1
+     * @param b receives the checkers, side to move is kept
+     */
+    public static void position(int[] slice, long index, BitBoard b) {
+        int bmCount = slice[0];
+        int bkCount = slice[1];
+        int rmCount = slice[2];
+        int rkCount = slice[3];
+        int free1 = BitBoard.SQUARES - bmCount;
+        int free2 = free1 - rmCount;
+        int free3 = free2 - bkCount;
+
+        long rk = index % CHOOSE[free3][rkCount];
+        index /= CHOOSE[free3][rkCount];
+        long bk = index % CHOOSE[free2][bkCount];
+        index /= CHOOSE[free2][bkCount];
+        long rm = index % CHOOSE[free1][rmCount];
+        index /= CHOOSE[free1][rmCount];
+
+        int free = -1;
+        int bmSet = unrank(index, bmCount, free);
+        free &= ~bmSet;
+        int rmSet = unrank(rm, rmCount, free);
+        free &= ~rmSet;
+        int bkSet = unrank(bk, bkCount, free);
+        free &= ~bkSet;
+        int rkSet = unrank(rk, rkCount, free);
+
+        b.black = bmSet | bkSet;
+        b.red = rmSet | rkSet;
+        b.kings = bkSet | rkSet;
+    }
+
+    /**
+     * @param b
+     * @return false if a man stands where it would have been crowned
+     */
+    public static boolean isValid(BitBoard b) {
+        return (b.black & ~b.kings & BLACK_LAST) == 0
+                && (b.red & ~b.kings & RED_LAST) == 0;
+    }
+
+    /**
+     * Write a database
+     *
+     * @param out
+     * @param maxPieces
+     * @param slices from slices(maxPieces)
+     * @param values per slice, two bytes per position, red to move first
+     * @throws IOException
+     */
+    public static void write(OutputStream out, int maxPieces, List<int[]> slices,
+            List<byte[]> values) throws IOException {
+        writeHeader(out, maxPieces, slices);
+        for (byte[] v : values) {
+            out.write(v);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the header of a database, the values of every slice in order
+     * must follow it
+     *
+     * @param out
+     * @param maxPieces
+     * @param slices from slices(maxPieces)
+     * @throws IOException
+     */
+    public static void writeHeader(OutputStream out, int maxPieces, List<int[]> slices)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(maxPieces);
+        data.writeInt(slices.size());
+        long offset = 10 + slices.size() * 8L;
+        for (int[] slice : slices) {
+            for (int k = 0; k < 4; k++) {
+                data.writeByte(slice[k]);
+            }
+            if (offset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("database too large");
+            }
+            data.writeInt((int) offset);
+            offset += sliceSize(slice[0], slice[1], slice[2], slice[3]) * 2;
+        }
+        data.flush();
+    }
+
+    private static int key(int bm, int bk, int rm, int rk) {
+        return ((bm * KINDS + bk) * KINDS + rm) * KINDS + rk;
+    }
+
+    /**
+     * colex rank of a set of squares among the free squares
+     */
+    private static long rank(int set, int free) {
+        long rank = 0;
+        int k = 0;
+        while (set != 0) {
+            int bit = set & -set;
+            set ^= bit;
+            rank += CHOOSE[Integer.bitCount(free & (bit - 1))][++k];
+        }
+        return rank;
+    }
+
+    private static int unrank(long rank, int k, int free) {
+        int set = 0;
+        int p = Integer.bitCount(free);
+        for (; k > 0; k--) {
+            do {
+                p--;
+            } while (CHOOSE[p][k] > rank);
+            rank -= CHOOSE[p][k];
+            set |= nthBit(free, p);
+        }
+        return set;
+    }
+
+    private static int nthBit(int mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return mask & -mask;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Linear evaluation of a position: material, kings, advancement of men,
+ * men guarding their back rank, mobility, and a piece-square table per
+ * piece type.
+ *
+ * Everything but mobility is a value per piece type and square, summed
+ * into GameEngine.getPositionScore as checkers move, so a leaf costs one
+ * read and one multiply. Piece-square tables cover the 32 squares of the
+ * 8x8 board, other sizes use the remaining terms only.
+ *
+ * Weights are kept in one array so the tuner can treat them as a vector,
+ * features returns the matching feature vector of a position.
+ */
+public final class Evaluator {
+
+    /**
+     * weight indexes
+     */
+    public static final int MAN = 0;
+    public static final int KING = 1;
+    public static final int ADVANCE = 2;
+    public static final int BACK_RANK = 3;
+    public static final int MOBILITY = 4;
+    public static final int PST = 5;
+    public static final int PST_SQUARES = BitBoard.SQUARES;
+    public static final int WEIGHTS = PST + 4 * PST_SQUARES;
+
+    public static final Evaluator DEFAULT = new Evaluator(defaultWeights());
+
+    private final int[] weights;
+    private final int[] table8;
+
+    /**
+     * @param weights WEIGHTS values, copied
+     */
+    public Evaluator(int[] weights) {
+        if (weights.length != WEIGHTS) {
+            throw new IllegalArgumentException("expected " + WEIGHTS + " weights");
+        }
+        this.weights = weights.clone();
+        table8 = generate(8);
+    }
+
+    public int[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Score for the player to move
+     *
+     * @param e
+     * @param mobility number of moves of the player to move
+     * @return
+     */
+    public int evaluate(GameEngine e, int mobility) {
+        int score = e.getPositionScore();
+        return (e.currentPlayer == GameEnum.RED ? score : -score)
+                + weights[MOBILITY] * mobility;
+    }
+
+    /**
+     * Features of a position, red counted positive and black negative. The
+     * dot product with the weights is evaluate from red's side
+     *
+     * @param e
+     * @param mobility number of moves of the player to move
+     * @param out WEIGHTS values, overwritten
+     */
+    public static void features(GameEngine e, int mobility, double[] out) {
+        Arrays.fill(out, 0);
+        int size = e.squaresPerSide;
+        Sprite[][] board = e.board();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int type = Zobrist.type(board[row][col]);
+                if (type < 0) {
+                    continue;
+                }
+                int sign = type >= 2 ? 1 : -1;
+                if ((type & 1) != 0) {
+                    out[KING] += sign;
+                } else {
+                    out[MAN] += sign;
+                    out[ADVANCE] += sign * advance(type, col, size);
+                    if (backRank(type, col, size)) {
+                        out[BACK_RANK] += sign;
+                    }
+                }
+                if (size == 8) {
+                    out[pst(type, row, col)] += sign;
+                }
+            }
+        }
+        out[MOBILITY] = e.currentPlayer == GameEnum.RED ? mobility : -mobility;
+    }
+
+    /**
+     * Weight index of a piece-square table entry of the 8x8 board
+     *
+     * @param type piece type, 0 black, 1 black king, 2 red, 3 red king
+     * @param row
+     * @param col
+     * @return
+     */
+    public static int pst(int type, int row, int col) {
+        return PST + type * PST_SQUARES + BitBoard.square(row, col);
+    }
+
+    /**
+     * Value of every piece type on every square, red positive, indexed by
+     * (row * size + col) * 4 + type like the Zobrist keys
+     *
+     * @param size
+     * @return
+     */
+    int[] table(int size) {
+        return size == 8 ? table8 : generate(size);
+    }
+
+    private int[] generate(int size) {
+        int[] table = new int[size * size * 4];
+        for (int row = 0; row < size; row++) {
+            for (int col = (row + 1) & 1; col < size; col += 2) {
+                for (int type = 0; type < 4; type++) {
+                    int v;
+                    if ((type & 1) != 0) {
+                        v = weights[KING];
+                    } else {
+                        v = weights[MAN] + weights[ADVANCE] * advance(type, col, size);
+                        if (backRank(type, col, size)) {
+                            v += weights[BACK_RANK];
+                        }
+                    }
+                    if (size == 8) {
+                        v += weights[pst(type, row, col)];
+                    }
+                    table[(row * size + col) * 4 + type] = type >= 2 ? v : -v;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * columns a man has moved from its own back rank, black moves up and
+     * red down
+     */
+    private static int advance(int type, int col, int size) {
+        return type == 0 ? col : size - 1 - col;
+    }
+
+    private static boolean backRank(int type, int col, int size) {
+        return type == 0 ? col == 0 : col == size - 1;
+    }
+
+    private static int[] defaultWeights() {
+        int[] w = new int[WEIGHTS];
+        w[MAN] = 100;
+        w[KING] = 160;
+        w[ADVANCE] = 3;
+        w[BACK_RANK] = 8;
+        w[MOBILITY] = 2;
+        for (int row = 0; row < 8; row++) {
+            for (int col = (row + 1) & 1; col < 8; col += 2) {
+                // men keep to the middle rows, kings to the middle of the board
+                int side = Math.abs(2 * row - 7) / 2;
+                int edge = Math.max(side, Math.abs(2 * col - 7) / 2);
+                for (int type = 0; type < 4; type++) {
+                    w[pst(type, row, col)] = (type & 1) == 0 ? 2 * (3 - side) : 4 * (3 - edge);
+                }
+            }
+        }
+        return w;
+    }
+}
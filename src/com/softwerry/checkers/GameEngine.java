@@ -23,6 +23,8 @@
  */
 package com.softwerry.checkers;
 
+import java.util.Arrays;
+
 /**
  * Handles player input and checker game rules
  */
@@ -38,11 +40,65 @@ public final class GameEngine {
         public int col;
     }
 
-    public Sprite[][] board;
+    /**
+     * position, changed only through Set, makeMove, unmakeMove and setBoard
+     * so the incremental state below stays in step with it
+     */
+    private Sprite[][] board;
     public int squaresPerSide = 8;
     public GameEnum currentPlayer;
     public GameEnum gameState;
 
+    private static final Sprite[] SPRITES = Sprite.values();
+
+    /**
+     * made moves for unmakeMove, see pushHistory for the layout
+     */
+    private long[] history = new long[256];
+    private int historySize = 0;
+
+    /**
+     * incremental Zobrist key of the checkers on the board
+     */
+    private long[] zobrist;
+    private long pieceHash;
+    /**
+     * false after the board was replaced, the state below is rebuilt on
+     * first use
+     */
+    private boolean indexed;
+
+    /**
+     * checkers on the board per piece type, see Zobrist.type
+     */
+    private final int[] pieceCount = new int[4];
+
+    /**
+     * Evaluator values of the checkers on the board, red minus black,
+     * and the evaluator's table for this board size
+     */
+    private Evaluator evaluator = Evaluator.DEFAULT;
+    private int[] evalTable;
+    private int positionScore;
+
+    /**
+     * squares (row << 8 | col) of black [0] and red [1] checkers, and the
+     * slot of every row * size + col in its list, -1 for no checker
+     */
+    private int[][] pieceSquares;
+    private final int[] pieceTotal = new int[2];
+    private int[] pieceSlot;
+
+    /**
+     * selection overlay, kept off the board so the position stays clean:
+     * selected checker as row * size + col or -1, its moves and a bit per
+     * target square, see At
+     */
+    private int selected = -1;
+    private final int[] hints = new int[4];
+    private int hintCount;
+    private long[] hintMask;
+
     public GameEngine() {
         StartNewGame(squaresPerSide);
         currentPlayer = GameEnum.RED;
@@ -63,11 +119,146 @@ public final class GameEngine {
         currentPlayer = firstPlayer;
     }
 
+    /**
+     * Copy of another game's position, without its move history
+     *
+     * @param other
+     */
+    public GameEngine(GameEngine other) {
+        squaresPerSide = other.squaresPerSide;
+        zobrist = Zobrist.keys(squaresPerSide);
+        evaluator = other.evaluator;
+        board = new Sprite[squaresPerSide][];
+        for (int row = 0; row < squaresPerSide; row++) {
+            board[row] = other.board[row].clone();
+        }
+        indexed = false;
+        currentPlayer = other.currentPlayer;
+        gameState = other.gameState;
+    }
+
     public void StartNewGame(int size) {
         gameState = GameEnum.PLAY;
         squaresPerSide = size;
+        zobrist = Zobrist.keys(size);
         board = GenEmptyBoardState();
+        indexed = false;
         InitCheckers();
+        historySize = 0;
+    }
+
+    /**
+     * Play a move generated by MoveGenerator, no hints and no turn checks.
+     * Can be taken back with unmakeMove
+     *
+     * @param move packed move
+     */
+    public void makeMove(int move) {
+        clearHints();
+        int fromRow = Move.fromRow(move);
+        int fromCol = Move.fromCol(move);
+        int toRow = Move.toRow(move);
+        int toCol = Move.toCol(move);
+        Sprite piece = board[fromRow][fromCol];
+        Sprite target = board[toRow][toCol];
+        Sprite captured = Sprite.EMPTY;
+
+        if (Move.isCapture(move)) {
+            captured = board[Move.capturedRow(move)][Move.capturedCol(move)];
+            Set(Move.capturedRow(move), Move.capturedCol(move), Sprite.EMPTY);
+        }
+        movePiece(fromRow, fromCol, toRow, toCol,
+                Move.isPromotion(move) ? promoted(piece) : piece);
+        pushHistory(move, piece, target, captured);
+
+        currentPlayer = currentPlayer == GameEnum.BLACK
+                ? GameEnum.RED : GameEnum.BLACK;
+    }
+
+    /**
+     * Take back the last move played with makeMove
+     *
+     * @return the move taken back
+     */
+    public int unmakeMove() {
+        if (historySize == 0) {
+            throw new IllegalStateException("no move to take back");
+        }
+        clearHints();
+        long entry = history[--historySize];
+        int move = (int) entry;
+        Sprite[] sprites = SPRITES;
+
+        movePiece(Move.toRow(move), Move.toCol(move), Move.fromRow(move),
+                Move.fromCol(move), sprites[(int) (entry >>> 36) & 0xF]);
+        Set(Move.toRow(move), Move.toCol(move), sprites[(int) (entry >>> 40) & 0xF]);
+        if (Move.isCapture(move)) {
+            Set(Move.capturedRow(move), Move.capturedCol(move),
+                    sprites[(int) (entry >>> 32) & 0xF]);
+        }
+
+        currentPlayer = currentPlayer == GameEnum.BLACK
+                ? GameEnum.RED : GameEnum.BLACK;
+        return move;
+    }
+
+    /**
+     * Move a checker to an empty square, keeping its place in the piece list
+     *
+     * @param s sprite placed on the target square
+     */
+    private void movePiece(int fromRow, int fromCol, int toRow, int toCol, Sprite s) {
+        if (!indexed) {
+            indexBoard();
+        }
+        Sprite old = board[fromRow][fromCol];
+        int oldType = Zobrist.type(old);
+        int newType = Zobrist.type(s);
+        int from = fromRow * squaresPerSide + fromCol;
+        int to = toRow * squaresPerSide + toCol;
+        pieceHash ^= Zobrist.key(zobrist, from, old) ^ Zobrist.key(zobrist, to, s);
+        positionScore += evalTable[(to << 2) + newType] - evalTable[(from << 2) + oldType];
+        pieceCount[oldType]--;
+        pieceCount[newType]++;
+        int slot = pieceSlot[from];
+        pieceSquares[newType >> 1][slot] = toRow << 8 | toCol;
+        pieceSlot[to] = slot;
+        pieceSlot[from] = -1;
+        board[fromRow][fromCol] = Sprite.EMPTY;
+        board[toRow][toCol] = s;
+    }
+
+    /**
+     * Number of moves that can be taken back
+     *
+     * @return
+     */
+    public int historySize() {
+        return historySize;
+    }
+
+    /**
+     * history entry: move in the low 32 bits, then captured, moved and
+     * replaced sprite ordinals, 4 bits each
+     */
+    private void pushHistory(int move, Sprite piece, Sprite target, Sprite captured) {
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+        }
+        history[historySize++] = (move & 0xFFFFFFFFL)
+                | ((long) captured.ordinal() << 32)
+                | ((long) piece.ordinal() << 36)
+                | ((long) target.ordinal() << 40);
+    }
+
+    private static Sprite promoted(Sprite piece) {
+        if (piece == Sprite.BLACK_CHECKER || piece == Sprite.BLACK_CHECKER_H) {
+            return Sprite.BLACK_CHECKER_S;
+        }
+        if (piece == Sprite.RED_CHECKER || piece == Sprite.RED_CHECKER_H) {
+            return Sprite.RED_CHECKER_S;
+        }
+        return piece;
     }
 
     /**
@@ -81,66 +272,28 @@ public final class GameEngine {
         if (!isValid(row, col) || gameState != GameEnum.PLAY) {
             return false;
         }
-
-        // clicked score square?
-        if (At(row, col) == Sprite.SCORE) {
-            CheckerPieces p = findPlayer();
-            Set(p.row, p.col, Sprite.EMPTY);
-            Set(p.row + (int) ((Math.round(row - p.row) / 2.0)),
-                    p.col + (int) (Math.round((col - p.col) / 2.0)), Sprite.EMPTY);
-            Set(row, col, p.checkerPiece);
-            Upgrade(row, col);
-            removeHints();
-            currentPlayer = currentPlayer == GameEnum.BLACK
-                    ? GameEnum.RED : GameEnum.BLACK;
-            return true;
+        if (!indexed) {
+            indexBoard();
         }
-
-        // clicked highlighted square?
-        if (At(row, col) == Sprite.EMPTY_NEXT) {
-            CheckerPieces p = findPlayer();
-            Set(p.row, p.col, Sprite.EMPTY);
-            Set(row, col, p.checkerPiece);
-            Upgrade(row, col);
-            removeHints();
-            currentPlayer = currentPlayer == GameEnum.BLACK
-                    ? GameEnum.RED : GameEnum.BLACK;
+        int square = row * squaresPerSide + col;
+
+        // clicked highlighted or score square?
+        if ((hintMask[square >> 6] & 1L << square) != 0) {
+            int move = hintAt(square);
+            makeMove(move);
+            if (Move.isCapture(move) && getPieceCount(currentPlayer) == 0) {
+                gameState = GameEnum.GAME_OVER;
+            }
             return true;
         }
 
         // clicked a checker?
-        if (At(row, col) == Sprite.BLACK_CHECKER
-                && currentPlayer == GameEnum.BLACK) {
-            removeHints();
-            Set(row, col, Sprite.BLACK_CHECKER_H);
-            renderHints(row, col);
-        } else if (At(row, col) == Sprite.BLACK_CHECKER_H) {
-            Set(row, col, Sprite.BLACK_CHECKER);
-            removeHints();
-        } else if (At(row, col) == Sprite.RED_CHECKER
-                && currentPlayer == GameEnum.RED) {
-            removeHints();
-            Set(row, col, Sprite.RED_CHECKER_H);
-            renderHints(row, col);
-        } else if (At(row, col) == Sprite.RED_CHECKER_H) {
-            Set(row, col, Sprite.RED_CHECKER);
-            removeHints();
-        } else if (At(row, col) == Sprite.RED_CHECKER_S
-                && currentPlayer == GameEnum.RED) {
-            removeHints();
-            Set(row, col, Sprite.RED_CHECKER_S_H);
+        if (square == selected) {
+            clearHints();
+        } else if (Zobrist.type(board[row][col]) >= 0
+                && isRed(row, col) == (currentPlayer == GameEnum.RED)) {
+            clearHints();
             renderHints(row, col);
-        } else if (At(row, col) == Sprite.RED_CHECKER_S_H) {
-            Set(row, col, Sprite.RED_CHECKER_S);
-            removeHints();
-        } else if (At(row, col) == Sprite.BLACK_CHECKER_S
-                && currentPlayer == GameEnum.BLACK) {
-            removeHints();
-            Set(row, col, Sprite.BLACK_CHECKER_S_H);
-            renderHints(row, col);
-        } else if (At(row, col) == Sprite.BLACK_CHECKER_S_H) {
-            Set(row, col, Sprite.BLACK_CHECKER_S);
-            removeHints();
         }
         return false;
     }
@@ -158,7 +311,18 @@ public final class GameEngine {
      */
     public Sprite At(int row, int col) {
         if (isValid(row, col)) {
-            return board[row][col];
+            Sprite s = board[row][col];
+            if (selected < 0 || !indexed) {
+                return s;
+            }
+            int square = row * squaresPerSide + col;
+            if (square == selected) {
+                return highlighted(s);
+            }
+            if ((hintMask[square >> 6] & 1L << square) != 0) {
+                return Move.isCapture(hintAt(square)) ? Sprite.SCORE : Sprite.EMPTY_NEXT;
+            }
+            return s;
         } else {
             return Sprite.INVALID;
         }
@@ -166,185 +330,296 @@ public final class GameEngine {
 
     public boolean Set(int row, int col, Sprite s) {
         if (isValid(row, col)) {
+            if (!indexed) {
+                indexBoard();
+            }
+            Sprite old = board[row][col];
+            int oldType = Zobrist.type(old);
+            int newType = Zobrist.type(s);
+            if (oldType == newType) {
+                board[row][col] = s;
+                return true;
+            }
+            int square = row * squaresPerSide + col;
+            pieceHash ^= Zobrist.key(zobrist, square, old)
+                    ^ Zobrist.key(zobrist, square, s);
+            if (oldType >= 0) {
+                pieceCount[oldType]--;
+                positionScore -= evalTable[(square << 2) + oldType];
+            }
+            if (newType >= 0) {
+                pieceCount[newType]++;
+                positionScore += evalTable[(square << 2) + newType];
+            }
+            if (oldType >> 1 != newType >> 1) {
+                if (oldType >= 0) {
+                    removePiece(oldType >> 1, row, col);
+                }
+                if (newType >= 0) {
+                    addPiece(newType >> 1, row, col);
+                }
+            }
             board[row][col] = s;
             return true;
         }
         return false;
     }
 
-    public boolean isEmpty(int row, int col) {
-        return At(row, col) == Sprite.EMPTY;
-    }
-
-    private void Upgrade(int row, int col) {
-        if ((At(row, col) == Sprite.BLACK_CHECKER
-                || At(row, col) == Sprite.BLACK_CHECKER_H)
-                && col == squaresPerSide - 1) {
-            Set(row, col, Sprite.BLACK_CHECKER_S);
-        }
-        if ((At(row, col) == Sprite.RED_CHECKER
-                || At(row, col) == Sprite.RED_CHECKER_H)
-                && col == 0) {
-            Set(row, col, Sprite.RED_CHECKER_S);
+    /**
+     * Zobrist key of the position and the player to move
+     *
+     * @return
+     */
+    public long getHash() {
+        if (!indexed) {
+            indexBoard();
         }
+        return currentPlayer == GameEnum.BLACK ? pieceHash ^ Zobrist.SIDE : pieceHash;
     }
 
-    private void renderHints(int row, int col) {
-        // show potential moves for REGULAR CHECKER, here direction matters
-        if (At(row, col) == Sprite.BLACK_CHECKER_H) {
-            if (isEmpty(row + 1, col + 1)) {
-                Set(row + 1, col + 1, Sprite.EMPTY_NEXT);
-            }
-            if (isEmpty(row - 1, col + 1)) {
-                Set(row - 1, col + 1, Sprite.EMPTY_NEXT);
+    /**
+     * Zobrist key computed from scratch, same value as getHash
+     *
+     * @return
+     */
+    public long computeHash() {
+        long hash = currentPlayer == GameEnum.BLACK ? Zobrist.SIDE : 0;
+        for (int row = 0; row < squaresPerSide; row++) {
+            for (int col = 0; col < squaresPerSide; col++) {
+                hash ^= Zobrist.key(zobrist, row * squaresPerSide + col, board[row][col]);
             }
         }
+        return hash;
+    }
 
-        if (At(row, col) == Sprite.RED_CHECKER_H) {
-            if (isEmpty(row + 1, col - 1)) {
-                Set(row + 1, col - 1, Sprite.EMPTY_NEXT);
-            }
-            if (isEmpty(row - 1, col - 1)) {
-                Set(row - 1, col - 1, Sprite.EMPTY_NEXT);
-            }
+    /**
+     * Evaluator values of all checkers, red minus black, kept up to date
+     * as checkers move
+     *
+     * @return
+     */
+    public int getPositionScore() {
+        if (!indexed) {
+            indexBoard();
         }
+        return positionScore;
+    }
 
-        // show winning moves for REGULAR CHECKERS
-        if (At(row, col) == Sprite.BLACK_CHECKER_H) {
-            if (isEmpty(row + 2, col + 2) && (At(row + 1, col + 1) == Sprite.RED_CHECKER)
-                    || At(row + 1, col + 1) == Sprite.RED_CHECKER_S) {
-                Set(row + 2, col + 2, Sprite.SCORE);
-            }
-            if (isEmpty(row - 2, col + 2) && (At(row - 1, col + 1) == Sprite.RED_CHECKER
-                    || At(row - 1, col + 1) == Sprite.RED_CHECKER_S)) {
-                Set(row - 2, col + 2, Sprite.SCORE);
-            }
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Evaluate with other weights, clears the selection
+     *
+     * @param evaluator
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        indexed = false;
+    }
+
+    /**
+     * Replace the position, for setting up games. Checkers are then placed
+     * with Set. Move history and selection are dropped
+     *
+     * @param board squaresPerSide x squaresPerSide squares, copied
+     */
+    public void setBoard(Sprite[][] board) {
+        Sprite[][] copy = new Sprite[squaresPerSide][];
+        for (int row = 0; row < squaresPerSide; row++) {
+            copy[row] = board[row].clone();
         }
+        this.board = copy;
+        indexed = false;
+        historySize = 0;
+    }
 
-        if (At(row, col) == Sprite.RED_CHECKER_H) {
-            if (isEmpty(row + 2, col - 2) && (At(row + 1, col - 1) == Sprite.BLACK_CHECKER
-                    || At(row + 1, col - 1) == Sprite.BLACK_CHECKER_S)) {
-                Set(row + 2, col - 2, Sprite.SCORE);
+    /**
+     * Live board for the move generator and the evaluator, never written
+     * through
+     */
+    Sprite[][] board() {
+        return board;
+    }
 
-            }
-            if (isEmpty(row - 2, col - 2) && (At(row - 1, col - 1) == Sprite.BLACK_CHECKER
-                    || At(row - 1, col - 1) == Sprite.BLACK_CHECKER_S)) {
-                Set(row - 2, col - 2, Sprite.SCORE);
+    /**
+     * Rebuild incremental state after the board was replaced
+     */
+    private void indexBoard() {
+        if (zobrist.length != squaresPerSide * squaresPerSide * 4) {
+            zobrist = Zobrist.keys(squaresPerSide);
+        }
+        evalTable = evaluator.table(squaresPerSide);
+        int squares = squaresPerSide * squaresPerSide;
+        if (pieceSlot == null || pieceSlot.length != squares) {
+            pieceSquares = new int[2][squares / 2 + 1];
+            pieceSlot = new int[squares];
+            hintMask = new long[(squares + 63) >> 6];
+        }
+        Arrays.fill(hintMask, 0);
+        hintCount = 0;
+        selected = -1;
+        indexed = true;
+        pieceHash = 0;
+        positionScore = 0;
+        Arrays.fill(pieceCount, 0);
+        Arrays.fill(pieceTotal, 0);
+        Arrays.fill(pieceSlot, -1);
+        for (int row = 0; row < squaresPerSide; row++) {
+            for (int col = 0; col < squaresPerSide; col++) {
+                int square = row * squaresPerSide + col;
+                int type = Zobrist.type(board[row][col]);
+                pieceHash ^= Zobrist.key(zobrist, square, board[row][col]);
+                if (type >= 0) {
+                    pieceCount[type]++;
+                    positionScore += evalTable[(square << 2) + type];
+                    addPiece(type >> 1, row, col);
+                }
             }
         }
+    }
 
-        // show potential moves for SUPER CHECKER, direction doesn't matter
-        if (At(row, col) == Sprite.RED_CHECKER_S_H
-                || At(row, col) == Sprite.BLACK_CHECKER_S_H) {
-            if (isEmpty(row + 1, col - 1)) {
-                Set(row + 1, col - 1, Sprite.EMPTY_NEXT);
-            }
-            if (isEmpty(row - 1, col - 1)) {
-                Set(row - 1, col - 1, Sprite.EMPTY_NEXT);
-            }
-            if (isEmpty(row + 1, col + 1)) {
-                Set(row + 1, col + 1, Sprite.EMPTY_NEXT);
-            }
-            if (isEmpty(row - 1, col + 1)) {
-                Set(row - 1, col + 1, Sprite.EMPTY_NEXT);
-            }
+    private void addPiece(int side, int row, int col) {
+        int[] list = pieceSquares[side];
+        int n = pieceTotal[side];
+        pieceSlot[row * squaresPerSide + col] = n;
+        list[n] = row << 8 | col;
+        pieceTotal[side] = n + 1;
+    }
+
+    private void removePiece(int side, int row, int col) {
+        int[] list = pieceSquares[side];
+        int square = row * squaresPerSide + col;
+        int slot = pieceSlot[square];
+        int last = list[--pieceTotal[side]];
+        list[slot] = last;
+        pieceSlot[(last >> 8) * squaresPerSide + (last & 0xFF)] = slot;
+        pieceSlot[square] = -1;
+    }
+
+    /**
+     * Squares of the checkers of a side as row << 8 | col, valid up to
+     * getPieceCount(side)
+     */
+    int[] pieceSquares(GameEnum side) {
+        if (!indexed) {
+            indexBoard();
         }
+        return pieceSquares[side == GameEnum.RED ? 1 : 0];
+    }
 
-        // show winning moves for SUPER CHECKERS
-        if (At(row, col) == Sprite.BLACK_CHECKER_S_H) {
-            if (isEmpty(row + 2, col + 2) && (At(row + 1, col + 1) == Sprite.RED_CHECKER
-                    || At(row + 1, col + 1) == Sprite.RED_CHECKER_S)) {
-                Set(row + 2, col + 2, Sprite.SCORE);
-            }
-            if (isEmpty(row - 2, col + 2) && (At(row - 1, col + 1) == Sprite.RED_CHECKER
-                    || At(row - 1, col + 1) == Sprite.RED_CHECKER_S)) {
-                Set(row - 2, col + 2, Sprite.SCORE);
-            }
-            if (isEmpty(row + 2, col - 2) && (At(row + 1, col - 1) == Sprite.RED_CHECKER
-                    || At(row + 1, col - 1) == Sprite.RED_CHECKER_S)) {
-                Set(row + 2, col - 2, Sprite.SCORE);
-            }
-            if (isEmpty(row - 2, col - 2) && (At(row - 1, col - 1) == Sprite.RED_CHECKER
-                    || At(row - 1, col - 1) == Sprite.RED_CHECKER_S)) {
-                Set(row - 2, col - 2, Sprite.SCORE);
-            }
+    /**
+     * Square of the i-th checker of a side, in no particular order
+     *
+     * @param side RED or BLACK
+     * @param i from 0 to getPieceCount(side) - 1
+     * @return row * squaresPerSide + col
+     */
+    public int getPieceSquare(GameEnum side, int i) {
+        if (!indexed) {
+            indexBoard();
         }
+        int square = pieceSquares[side == GameEnum.RED ? 1 : 0][i];
+        return (square >> 8) * squaresPerSide + (square & 0xFF);
+    }
 
-        if (At(row, col) == Sprite.RED_CHECKER_S_H) {
-            if (isEmpty(row + 2, col + 2) && (At(row + 1, col + 1) == Sprite.BLACK_CHECKER
-                    || At(row + 1, col + 1) == Sprite.BLACK_CHECKER_S)) {
-                Set(row + 2, col + 2, Sprite.SCORE);
-            }
-            if (isEmpty(row - 2, col + 2) && (At(row - 1, col + 1) == Sprite.BLACK_CHECKER
-                    || At(row - 1, col + 1) == Sprite.BLACK_CHECKER_S)) {
-                Set(row - 2, col + 2, Sprite.SCORE);
-            }
-            if (isEmpty(row + 2, col - 2) && (At(row + 1, col - 1) == Sprite.BLACK_CHECKER
-                    || At(row + 1, col - 1) == Sprite.BLACK_CHECKER_S)) {
-                Set(row + 2, col - 2, Sprite.SCORE);
-            }
-            if (isEmpty(row - 2, col - 2) && (At(row - 1, col - 1) == Sprite.BLACK_CHECKER
-                    || At(row - 1, col - 1) == Sprite.BLACK_CHECKER_S)) {
-                Set(row - 2, col - 2, Sprite.SCORE);
-            }
+    /**
+     * Number of checkers of a side, kings included
+     *
+     * @param side RED or BLACK
+     * @return
+     */
+    public int getPieceCount(GameEnum side) {
+        if (!indexed) {
+            indexBoard();
         }
+        return pieceTotal[side == GameEnum.RED ? 1 : 0];
     }
 
-    private void removeHints() {
-        for (int row = 0; row < squaresPerSide; row++) {
-            for (int col = 0; col < squaresPerSide; col++) {
-                if ((row % 2 == 1 && col % 2 == 0) || (row % 2 != 1 && col % 2 != 0)) {
-                    if (At(row, col) == Sprite.EMPTY_NEXT
-                            || At(row, col) == Sprite.SCORE) {
-                        Set(row, col, Sprite.EMPTY);
-                    }
-                    if (At(row, col) == Sprite.BLACK_CHECKER_H) {
-                        Set(row, col, Sprite.BLACK_CHECKER);
-                    }
-                    if (At(row, col) == Sprite.RED_CHECKER_H) {
-                        Set(row, col, Sprite.RED_CHECKER);
-                    }
-                    if (At(row, col) == Sprite.BLACK_CHECKER_S_H) {
-                        Set(row, col, Sprite.BLACK_CHECKER_S);
-                    }
-                    if (At(row, col) == Sprite.RED_CHECKER_S_H) {
-                        Set(row, col, Sprite.RED_CHECKER_S);
-                    }
-                }
-            }
+    /**
+     * Number of kings of a side
+     *
+     * @param side RED or BLACK
+     * @return
+     */
+    public int getKingCount(GameEnum side) {
+        if (!indexed) {
+            indexBoard();
         }
+        return side == GameEnum.RED ? pieceCount[3] : pieceCount[1];
     }
 
-    private CheckerPieces findFirst(Sprite g) {
-        CheckerPieces result = new CheckerPieces();
+    public boolean isEmpty(int row, int col) {
+        return At(row, col) == Sprite.EMPTY;
+    }
 
-        result.checkerPiece = g;
-        result.col = -1;
-        result.row = -1;
+    /**
+     * Selected checker
+     *
+     * @return selected checker as shown by At, null if nothing is selected
+     */
+    public CheckerPieces getSelected() {
+        if (selected < 0 || !indexed) {
+            return null;
+        }
+        CheckerPieces p = new CheckerPieces();
+        p.row = selected / squaresPerSide;
+        p.col = selected % squaresPerSide;
+        p.checkerPiece = At(p.row, p.col);
+        return p;
+    }
 
-        for (int row = 0; row < squaresPerSide; row++) {
-            for (int col = 0; col < squaresPerSide; col++) {
-                if (At(row, col) == g) {
-                    result.col = col;
-                    result.row = row;
-                }
+    /**
+     * Select a checker and mark the squares it can move to
+     */
+    private void renderHints(int row, int col) {
+        int[] moves = new int[MoveGenerator.capacity(squaresPerSide)];
+        int count = MoveGenerator.generate(this, currentPlayer, moves);
+        selected = row * squaresPerSide + col;
+        for (int i = 0; i < count; i++) {
+            if (Move.fromRow(moves[i]) == row && Move.fromCol(moves[i]) == col) {
+                int square = Move.toRow(moves[i]) * squaresPerSide + Move.toCol(moves[i]);
+                hintMask[square >> 6] |= 1L << square;
+                hints[hintCount++] = moves[i];
             }
         }
-        return result;
     }
 
-    private CheckerPieces findPlayer() {
-        for (Sprite g : new Sprite[]{
-            Sprite.BLACK_CHECKER_H,
-            Sprite.BLACK_CHECKER_S_H,
-            Sprite.RED_CHECKER_H,
-            Sprite.RED_CHECKER_S_H}) {
-            CheckerPieces p = findFirst(g);
-            if (p.col != -1) {
-                return p;
+    private void clearHints() {
+        for (int i = 0; i < hintCount; i++) {
+            int square = Move.toRow(hints[i]) * squaresPerSide + Move.toCol(hints[i]);
+            hintMask[square >> 6] &= ~(1L << square);
+        }
+        hintCount = 0;
+        selected = -1;
+    }
+
+    /**
+     * Move of the selected checker that ends on a marked square
+     */
+    private int hintAt(int square) {
+        for (int i = 0; i < hintCount; i++) {
+            if (Move.toRow(hints[i]) * squaresPerSide + Move.toCol(hints[i]) == square) {
+                return hints[i];
             }
         }
-        return null;
+        return Move.NONE;
+    }
+
+    private static Sprite highlighted(Sprite s) {
+        switch (s) {
+            case BLACK_CHECKER:
+                return Sprite.BLACK_CHECKER_H;
+            case BLACK_CHECKER_S:
+                return Sprite.BLACK_CHECKER_S_H;
+            case RED_CHECKER:
+                return Sprite.RED_CHECKER_H;
+            case RED_CHECKER_S:
+                return Sprite.RED_CHECKER_S_H;
+            default:
+                return s;
+        }
     }
 
     /**
@@ -374,10 +649,10 @@ public final class GameEngine {
             for (int col = 0; col < squaresPerSide; col++) {
                 if ((row % 2 == 1 && col % 2 == 0) || (row % 2 != 1 && col % 2 != 0)) {
                     if (row < 3) {
-                        board[col][row] = Sprite.BLACK_CHECKER;
+                        Set(col, row, Sprite.BLACK_CHECKER);
                     }
                     if (row > 4) {
-                        board[col][row] = Sprite.RED_CHECKER;
+                        Set(col, row, Sprite.RED_CHECKER);
                     }
                 }
             }
@@ -385,12 +660,17 @@ public final class GameEngine {
     }
 
     /**
-     * Returns current game state
+     * Returns a copy of the current game position, selection and move hints
+     * are not part of it, read them through At
      *
      * @return
      */
     public Sprite[][] getState() {
-        return board;
+        Sprite[][] copy = new Sprite[squaresPerSide][];
+        for (int row = 0; row < squaresPerSide; row++) {
+            copy[row] = board[row].clone();
+        }
+        return copy;
     }
 
     /**
@@ -422,27 +702,12 @@ public final class GameEngine {
     }
 
     /**
-     * Returns side score
+     * Returns side score, the number of opponent checkers taken
      *
      * @param side
      * @return
      */
     public int getScore(GameEnum side) {
-        int score = 12;
-        for (int row = 0; row < squaresPerSide; row++) {
-            for (int col = 0; col < squaresPerSide; col++) {
-                if (side == GameEnum.RED && isBlack(row, col)) {
-                    score--;
-                } else if (side == GameEnum.BLACK && isRed(row, col)) {
-                    score--;
-                }
-            }
-        }
-
-        if (score > 11) {
-            gameState = GameEnum.GAME_OVER;
-        }
-
-        return score;
+        return 12 - getPieceCount(side == GameEnum.RED ? GameEnum.BLACK : GameEnum.RED);
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Moves of one game with its board size, first player and result, as
+ * stored by GameRecordWriter.
+ *
+ * In a file every move takes two bytes: bits 0-7 playable square index of
+ * the checker (row * ((size + 1) / 2) + col / 2), bit 8 set for a move to a higher
+ * row, bit 9 set for a move to a higher col, bit 10 capture, bit 11
+ * promotion. The target square follows from the direction and the capture
+ * flag.
+ */
+public final class GameRecord {
+
+    /**
+     * largest board whose playable squares fit in a byte
+     */
+    public static final int MAX_SIZE = 22;
+
+    public int size = 8;
+    public GameEnum firstPlayer = GameEnum.RED;
+    /**
+     * winner, RED or BLACK, PLAY for a draw or an unfinished game
+     */
+    public GameEnum result = GameEnum.PLAY;
+
+    private int[] moves = new int[128];
+    private int length;
+
+    public GameRecord() {
+    }
+
+    /**
+     * Empty record of a game about to start
+     *
+     * @param e game at its start position
+     */
+    public GameRecord(GameEngine e) {
+        size = e.squaresPerSide;
+        firstPlayer = e.currentPlayer;
+    }
+
+    public void clear() {
+        length = 0;
+        result = GameEnum.PLAY;
+    }
+
+    public void add(int move) {
+        if (length == moves.length) {
+            moves = Arrays.copyOf(moves, length * 2);
+        }
+        moves[length++] = move;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int move(int ply) {
+        return moves[ply];
+    }
+
+    /**
+     * Replay the first plies of the game
+     *
+     * @param plies number of moves to play
+     * @return game after those moves
+     */
+    public GameEngine replay(int plies) {
+        GameEngine e = new GameEngine(firstPlayer, size);
+        for (int i = 0; i < plies; i++) {
+            e.makeMove(moves[i]);
+        }
+        return e;
+    }
+
+    /**
+     * Two byte form of a move
+     *
+     * @param move packed move
+     * @param size board size
+     * @return
+     */
+    public static int encode(int move, int size) {
+        int code = Move.fromRow(move) * ((size + 1) / 2) + Move.fromCol(move) / 2;
+        if (Move.toRow(move) > Move.fromRow(move)) {
+            code |= 1 << 8;
+        }
+        if (Move.toCol(move) > Move.fromCol(move)) {
+            code |= 1 << 9;
+        }
+        if (Move.isCapture(move)) {
+            code |= 1 << 10;
+        }
+        if (Move.isPromotion(move)) {
+            code |= 1 << 11;
+        }
+        return code;
+    }
+
+    /**
+     * Packed move from its two byte form
+     *
+     * @param code from encode
+     * @param size board size
+     * @return
+     */
+    public static int decode(int code, int size) {
+        int half = (size + 1) / 2;
+        int row = (code & 0xFF) / half;
+        // playable squares have odd row + col
+        int col = (code & 0xFF) % half * 2;
+        col += (row + col) % 2 == 0 ? 1 : 0;
+        int step = (code & 1 << 10) != 0 ? 2 : 1;
+        int toRow = row + ((code & 1 << 8) != 0 ? step : -step);
+        int toCol = col + ((code & 1 << 9) != 0 ? step : -step);
+        return Move.make(row, col, toRow, toCol,
+                ((code & 1 << 10) != 0 ? Move.CAPTURE : 0)
+                | ((code & 1 << 11) != 0 ? Move.PROMOTE : 0));
+    }
+}
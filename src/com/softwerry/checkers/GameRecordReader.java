@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads games written by GameRecordWriter one at a time, so files of any
+ * size stream through a single reused record.
+ */
+public final class GameRecordReader implements Closeable {
+
+    private final DataInputStream in;
+
+    public GameRecordReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (this.in.readInt() != GameRecordWriter.MAGIC) {
+            throw new IOException("not a game record file");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != GameRecordWriter.VERSION) {
+            throw new IOException("unsupported game record version " + version);
+        }
+    }
+
+    /**
+     * Read the next game
+     *
+     * @param record filled with the game, previous moves are dropped
+     * @return false at the end of the file
+     * @throws IOException also for a file cut in the middle of a game
+     */
+    public boolean read(GameRecord record) throws IOException {
+        int size = in.read();
+        if (size < 0) {
+            return false;
+        }
+        int flags = in.readUnsignedByte();
+        int length = in.readUnsignedShort();
+        record.clear();
+        record.size = size;
+        record.firstPlayer = (flags & 1) != 0 ? GameEnum.BLACK : GameEnum.RED;
+        switch ((flags >> 1) & 3) {
+            case 1:
+                record.result = GameEnum.RED;
+                break;
+            case 2:
+                record.result = GameEnum.BLACK;
+                break;
+            default:
+                record.result = GameEnum.PLAY;
+                break;
+        }
+        for (int i = 0; i < length; i++) {
+            record.add(GameRecord.decode(in.readUnsignedShort(), size));
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams games to a compact binary file.
+ *
+ * A file starts with the magic "CKRS" and a version byte, then holds games
+ * back to back. A game is a size byte, a flags byte (bit 0 black moved
+ * first, bits 1-2 result: 0 draw or unfinished, 1 red won, 2 black won),
+ * the number of moves as an unsigned short and two bytes per move, see
+ * GameRecord. All values are big endian.
+ */
+public final class GameRecordWriter implements Closeable {
+
+    static final int MAGIC = 0x434B5253;
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+
+    public GameRecordWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    /**
+     * Append a game
+     *
+     * @param record
+     * @throws IOException
+     */
+    public void write(GameRecord record) throws IOException {
+        if (record.size > GameRecord.MAX_SIZE || record.length() > 0xFFFF) {
+            throw new IllegalArgumentException("game too large to record");
+        }
+        out.writeByte(record.size);
+        out.writeByte((record.firstPlayer == GameEnum.BLACK ? 1 : 0)
+                | (record.result == GameEnum.RED ? 1 << 1
+                        : record.result == GameEnum.BLACK ? 2 << 1 : 0));
+        out.writeShort(record.length());
+        for (int i = 0; i < record.length(); i++) {
+            out.writeShort(GameRecord.encode(record.move(i), record.size));
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
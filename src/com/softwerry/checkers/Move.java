@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+/**
+ * Packed move encoding, a move is a single int so move lists can live in
+ * plain int[] buffers.
+ *
+ * bits 0-5 from row, 6-11 from col, 12-17 to row, 18-23 to col, bit 24
+ * capture flag, bit 25 promotion flag. The captured checker always sits
+ * half way between from and to.
+ */
+public final class Move {
+
+    /**
+     * no move, (0,0) is never a playable square
+     */
+    public static final int NONE = 0;
+    public static final int CAPTURE = 1 << 24;
+    public static final int PROMOTE = 1 << 25;
+
+    private Move() {
+    }
+
+    public static int make(int fromRow, int fromCol, int toRow, int toCol, int flags) {
+        return fromRow | (fromCol << 6) | (toRow << 12) | (toCol << 18) | flags;
+    }
+
+    public static int fromRow(int move) {
+        return move & 0x3F;
+    }
+
+    public static int fromCol(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int toRow(int move) {
+        return (move >>> 12) & 0x3F;
+    }
+
+    public static int toCol(int move) {
+        return (move >>> 18) & 0x3F;
+    }
+
+    public static int capturedRow(int move) {
+        return (fromRow(move) + toRow(move)) >> 1;
+    }
+
+    public static int capturedCol(int move) {
+        return (fromCol(move) + toCol(move)) >> 1;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTE) != 0;
+    }
+
+    /**
+     * Human readable move, e.g. "3,6x1,4"
+     *
+     * @param move
+     * @return
+     */
+    public static String toString(int move) {
+        if (move == NONE) {
+            return "none";
+        }
+        return fromRow(move) + "," + fromCol(move)
+                + (isCapture(move) ? "x" : "-")
+                + toRow(move) + "," + toCol(move);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+/**
+ * Legal move generator. Writes packed moves (see Move) into a caller
+ * supplied buffer, never allocates and never touches the board.
+ *
+ * Captures are written first. Hint squares (EMPTY_NEXT, SCORE) count as
+ * empty, so a position with a selected checker generates the same moves.
+ */
+public final class MoveGenerator {
+
+    /**
+     * buffer size that fits every reachable position on an 8x8 board, 12
+     * kings with 4 moves each
+     */
+    public static final int MAX_MOVES = 48;
+
+    private static final int NONE = 0;
+    private static final int RED = 1;
+    private static final int BLACK = 2;
+
+    /**
+     * per Sprite ordinal lookups
+     */
+    private static final int[] OWNER = new int[Sprite.values().length];
+    private static final boolean[] KING = new boolean[Sprite.values().length];
+    private static final boolean[] VACANT = new boolean[Sprite.values().length];
+
+    /**
+     * row, col steps for the four diagonals, black men use the first two,
+     * red men the last two
+     */
+    private static final int[] DR = {-1, 1, -1, 1};
+    private static final int[] DC = {1, 1, -1, -1};
+
+    /**
+     * square index of the neighbour and jump landing per diagonal, -1 when
+     * off the board
+     */
+    private static final int[][] STEP = new int[4][BitBoard.SQUARES];
+    private static final int[][] JUMP = new int[4][BitBoard.SQUARES];
+
+    static {
+        for (Sprite s : Sprite.values()) {
+            VACANT[s.ordinal()] = s == Sprite.EMPTY
+                    || s == Sprite.EMPTY_NEXT || s == Sprite.SCORE;
+        }
+        OWNER[Sprite.RED_CHECKER.ordinal()] = RED;
+        OWNER[Sprite.RED_CHECKER_H.ordinal()] = RED;
+        OWNER[Sprite.RED_CHECKER_S.ordinal()] = RED;
+        OWNER[Sprite.RED_CHECKER_S_H.ordinal()] = RED;
+        OWNER[Sprite.BLACK_CHECKER.ordinal()] = BLACK;
+        OWNER[Sprite.BLACK_CHECKER_H.ordinal()] = BLACK;
+        OWNER[Sprite.BLACK_CHECKER_S.ordinal()] = BLACK;
+        OWNER[Sprite.BLACK_CHECKER_S_H.ordinal()] = BLACK;
+        KING[Sprite.RED_CHECKER_S.ordinal()] = true;
+        KING[Sprite.RED_CHECKER_S_H.ordinal()] = true;
+        KING[Sprite.BLACK_CHECKER_S.ordinal()] = true;
+        KING[Sprite.BLACK_CHECKER_S_H.ordinal()] = true;
+
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            for (int d = 0; d < 4; d++) {
+                STEP[d][sq] = BitBoard.square(
+                        BitBoard.ROW[sq] + DR[d], BitBoard.COL[sq] + DC[d]);
+                JUMP[d][sq] = BitBoard.square(
+                        BitBoard.ROW[sq] + 2 * DR[d], BitBoard.COL[sq] + 2 * DC[d]);
+            }
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Buffer size that fits every reachable position for a board size
+     *
+     * @param squaresPerSide
+     * @return
+     */
+    public static int capacity(int squaresPerSide) {
+        if (squaresPerSide <= BitBoard.SIDE) {
+            return MAX_MOVES;
+        }
+        // 4 moves for every playable square
+        return squaresPerSide * squaresPerSide * 2;
+    }
+
+    /**
+     * Generate moves for the player to move
+     *
+     * @param e current game which contains current game state
+     * @param moves buffer for packed moves
+     * @return number of moves written
+     */
+    public static int generate(GameEngine e, int[] moves) {
+        return generate(e, e.currentPlayer, moves);
+    }
+
+    /**
+     * Generate moves for a given side
+     *
+     * @param e current game which contains current game state
+     * @param side RED or BLACK
+     * @param moves buffer for packed moves
+     * @return number of moves written
+     */
+    public static int generate(GameEngine e, GameEnum side, int[] moves) {
+        if (e.gameState != GameEnum.PLAY) {
+            return 0;
+        }
+        Sprite[][] board = e.board();
+        int size = e.squaresPerSide;
+        int me = side == GameEnum.RED ? RED : BLACK;
+        int firstDir = me == BLACK ? 0 : 2;
+        int lastCol = me == BLACK ? size - 1 : 0;
+        int count = 0;
+        int captures = 0;
+
+        int pieces = e.getPieceCount(side);
+        int[] squares = e.pieceSquares(side);
+        for (int p = 0; p < pieces; p++) {
+            int row = squares[p] >> 8;
+            int col = squares[p] & 0xFF;
+            int s = board[row][col].ordinal();
+            boolean king = KING[s];
+            for (int i = 0; i < 4; i++) {
+                // men only go forward
+                int d = (firstDir + i) & 3;
+                if (i > 1 && !king) {
+                    break;
+                }
+                int r1 = row + DR[d];
+                int c1 = col + DC[d];
+                if (r1 < 0 || r1 >= size || c1 < 0 || c1 >= size) {
+                    continue;
+                }
+                int t = board[r1][c1].ordinal();
+                if (VACANT[t]) {
+                    moves[count++] = Move.make(row, col, r1, c1,
+                            !king && c1 == lastCol ? Move.PROMOTE : 0);
+                    continue;
+                }
+                if (OWNER[t] == me || OWNER[t] == NONE) {
+                    continue;
+                }
+                int r2 = r1 + DR[d];
+                int c2 = c1 + DC[d];
+                if (r2 < 0 || r2 >= size || c2 < 0 || c2 >= size
+                        || !VACANT[board[r2][c2].ordinal()]) {
+                    continue;
+                }
+                // keep captures in front
+                moves[count++] = moves[captures];
+                moves[captures++] = Move.make(row, col, r2, c2, Move.CAPTURE
+                        | (!king && c2 == lastCol ? Move.PROMOTE : 0));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generate moves for the side to move of a packed position
+     *
+     * @param b position
+     * @param moves buffer for packed moves
+     * @return number of moves written
+     */
+    public static int generate(BitBoard b, int[] moves) {
+        boolean isBlack = b.sideToMove == GameEnum.BLACK;
+        int own = isBlack ? b.black : b.red;
+        int opponent = isBlack ? b.red : b.black;
+        int empty = b.empty();
+        int firstDir = isBlack ? 0 : 2;
+        int lastCol = isBlack ? BitBoard.SIDE - 1 : 0;
+        int count = 0;
+        int captures = 0;
+
+        while (own != 0) {
+            int from = Integer.numberOfTrailingZeros(own);
+            own &= own - 1;
+            boolean king = (b.kings & (1 << from)) != 0;
+            int dirs = king ? 4 : 2;
+            for (int i = 0; i < dirs; i++) {
+                int d = (firstDir + i) & 3;
+                int to = STEP[d][from];
+                if (to < 0) {
+                    continue;
+                }
+                if ((empty & (1 << to)) != 0) {
+                    moves[count++] = Move.make(BitBoard.ROW[from], BitBoard.COL[from],
+                            BitBoard.ROW[to], BitBoard.COL[to],
+                            !king && BitBoard.COL[to] == lastCol ? Move.PROMOTE : 0);
+                    continue;
+                }
+                int land = JUMP[d][from];
+                if ((opponent & (1 << to)) == 0 || land < 0
+                        || (empty & (1 << land)) == 0) {
+                    continue;
+                }
+                moves[count++] = moves[captures];
+                moves[captures++] = Move.make(BitBoard.ROW[from], BitBoard.COL[from],
+                        BitBoard.ROW[land], BitBoard.COL[land], Move.CAPTURE
+                        | (!king && BitBoard.COL[land] == lastCol ? Move.PROMOTE : 0));
+            }
+        }
+        return count;
+    }
+}
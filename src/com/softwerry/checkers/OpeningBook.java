@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Moves played from known positions and how they scored, looked up by the
+ * Zobrist hash of the position.
+ *
+ * File: magic "CKOB", version byte, board size byte, entry count, then
+ * the entries sorted by hash as signed longs: hash, packed move, games,
+ * points with 2 for a win and 1 for a draw of the side that moved. Big
+ * endian. A lookup is one binary search over the entries.
+ */
+public final class OpeningBook {
+
+    static final int MAGIC = 0x434B4F42;
+    static final int VERSION = 1;
+    private static final int HEADER = 10;
+    private static final int ENTRY = 20;
+
+    /**
+     * Statistics of one move from one position
+     */
+    public static final class Entry {
+
+        public final long hash;
+        public final int move;
+        public int games;
+        public int points;
+
+        public Entry(long hash, int move) {
+            this.hash = hash;
+            this.move = move;
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int size;
+    private final int count;
+
+    private OpeningBook(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.limit() < HEADER || data.getInt(0) != MAGIC) {
+            throw new IOException("not an opening book");
+        }
+        if (data.get(4) != VERSION) {
+            throw new IOException("unsupported opening book version " + data.get(4));
+        }
+        size = data.get(5);
+        count = data.getInt(6);
+        if (data.limit() < HEADER + (long) count * ENTRY) {
+            throw new IOException("opening book is cut short");
+        }
+    }
+
+    /**
+     * Map a book file read only
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static OpeningBook open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a book from a stream, such as an Android asset
+     *
+     * @param in read to the end, not closed
+     * @return
+     * @throws IOException
+     */
+    public static OpeningBook read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        return new OpeningBook(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Board size the book was built for
+     *
+     * @return
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of position and move pairs
+     *
+     * @return
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Best scoring book move of a game, safe to call from several threads
+     *
+     * @param e
+     * @return packed move, Move.NONE if the position is not in the book
+     */
+    public int probe(GameEngine e) {
+        if (e.squaresPerSide != size) {
+            return Move.NONE;
+        }
+        long hash = e.getHash();
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (hashAt(mid) < hash) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        int best = -1;
+        for (int i = lo; i < count && hashAt(i) == hash; i++) {
+            if (best < 0 || better(i, best)) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            return Move.NONE;
+        }
+
+        // a hash collision could name a move that is not legal here
+        int move = data.getInt(HEADER + best * ENTRY + 8);
+        int[] moves = new int[MoveGenerator.capacity(size)];
+        int n = MoveGenerator.generate(e, moves);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Write a book
+     *
+     * @param out
+     * @param size board size of the games
+     * @param entries in any order, sorted here
+     * @throws IOException
+     */
+    public static void write(OutputStream out, int size, List<Entry> entries) throws IOException {
+        List<Entry> sorted = new ArrayList<Entry>(entries);
+        Collections.sort(sorted, new Comparator<Entry>() {
+            public int compare(Entry a, Entry b) {
+                return a.hash < b.hash ? -1 : a.hash > b.hash ? 1 : 0;
+            }
+        });
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(size);
+        data.writeInt(sorted.size());
+        for (Entry entry : sorted) {
+            data.writeLong(entry.hash);
+            data.writeInt(entry.move);
+            data.writeInt(entry.games);
+            data.writeInt(entry.points);
+        }
+        data.flush();
+    }
+
+    private long hashAt(int i) {
+        return data.getLong(HEADER + i * ENTRY);
+    }
+
+    /**
+     * higher average score first, more games on a tie
+     */
+    private boolean better(int a, int b) {
+        long gamesA = data.getInt(HEADER + a * ENTRY + 12);
+        long pointsA = data.getInt(HEADER + a * ENTRY + 16);
+        long gamesB = data.getInt(HEADER + b * ENTRY + 12);
+        long pointsB = data.getInt(HEADER + b * ENTRY + 16);
+        long cmp = pointsA * gamesB - pointsB * gamesA;
+        return cmp > 0 || cmp == 0 && gamesA > gamesB;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.Random;
+
+/**
+ * Picks one of the legal moves at random
+ */
+public final class RandomStrategy implements MoveStrategy {
+
+    private final Random rn;
+    private int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    public RandomStrategy() {
+        rn = new Random();
+    }
+
+    public RandomStrategy(long seed) {
+        rn = new Random(seed);
+    }
+
+    @Override
+    public int selectMove(GameEngine e) {
+        if (moves.length < MoveGenerator.capacity(e.squaresPerSide)) {
+            moves = new int[MoveGenerator.capacity(e.squaresPerSide)];
+        }
+        int count = MoveGenerator.generate(e, moves);
+        return count < 1 ? Move.NONE : moves[rn.nextInt(count)];
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size transposition table in a flat long[], shared by search
+ * threads without locks.
+ *
+ * An entry is two longs, the key XOR the data and the data itself. A
+ * reader recomputes the key from both halves, so an entry torn by a
+ * concurrent write fails verification and is treated as a miss.
+ *
+ * data bits 0-25 best move, 26-45 score, 46-52 depth, 53-54 bound,
+ * 55-62 search generation. A zero data word is an empty slot.
+ */
+public final class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    private static final int SCORE_OFFSET = 1 << 19;
+    private static final int MAX_DEPTH = 127;
+
+    private final long[] table;
+    private final int mask;
+    private int generation;
+
+    /**
+     * @param megabytes table size, rounded down to a power of two entries
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(1, megabytes) * 1024L * 1024L / 16;
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 27));
+        table = new long[size * 2];
+        mask = size - 1;
+    }
+
+    /**
+     * Age the table before a new search so old entries get replaced first
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * Number of entries
+     *
+     * @return
+     */
+    public int size() {
+        return mask + 1;
+    }
+
+    /**
+     * Look up a position
+     *
+     * @param key Zobrist key
+     * @return packed entry data, 0 on a miss
+     */
+    public long probe(long key) {
+        int i = ((int) key & mask) << 1;
+        long data = table[i + 1];
+        if (data == 0 || (table[i] ^ data) != key) {
+            return 0;
+        }
+        return data;
+    }
+
+    /**
+     * Save a search result. A slot keeps the deeper result unless it comes
+     * from an older search or belongs to the same position
+     *
+     * @param key Zobrist key
+     * @param depth remaining search depth
+     * @param bound EXACT, LOWER or UPPER
+     * @param score
+     * @param move best move, Move.NONE keeps the one already stored
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        int i = ((int) key & mask) << 1;
+        long old = table[i + 1];
+        boolean sameKey = old != 0 && (table[i] ^ old) == key;
+
+        if (old != 0 && !sameKey && generation(old) == generation
+                && depth < depth(old)) {
+            return;
+        }
+        if (sameKey && move == Move.NONE) {
+            move = move(old);
+        }
+
+        long data = (move & 0x3FFFFFFL)
+                | ((long) (score + SCORE_OFFSET) << 26)
+                | ((long) Math.min(Math.max(depth, 0), MAX_DEPTH) << 46)
+                | ((long) bound << 53)
+                | ((long) generation << 55);
+        table[i] = key ^ data;
+        table[i + 1] = data;
+    }
+
+    /**
+     * Permille of used slots written by the current search, sampled
+     *
+     * @return
+     */
+    public int usage() {
+        int sample = Math.min(1000, size());
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x3FFFFFFL);
+    }
+
+    public static int score(long data) {
+        return (int) ((data >>> 26) & 0xFFFFF) - SCORE_OFFSET;
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 46) & 0x7F);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 53) & 0x3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> 55) & 0xFF);
+    }
+}
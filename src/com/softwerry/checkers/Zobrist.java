@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys for position hashing, one random 64 bit key per square and
+ * piece type plus one for black to move.
+ *
+ * Keys come from a fixed seed so hashes stay the same between runs and can
+ * be stored in files.
+ */
+final class Zobrist {
+
+    static final long SIDE;
+
+    /**
+     * piece type per Sprite ordinal, -1 for squares without a checker.
+     * Highlighted checkers hash like plain ones
+     */
+    private static final int[] TYPE = new int[Sprite.values().length];
+    private static final long[] KEYS_8;
+
+    static {
+        for (Sprite s : Sprite.values()) {
+            TYPE[s.ordinal()] = -1;
+        }
+        TYPE[Sprite.BLACK_CHECKER.ordinal()] = 0;
+        TYPE[Sprite.BLACK_CHECKER_H.ordinal()] = 0;
+        TYPE[Sprite.BLACK_CHECKER_S.ordinal()] = 1;
+        TYPE[Sprite.BLACK_CHECKER_S_H.ordinal()] = 1;
+        TYPE[Sprite.RED_CHECKER.ordinal()] = 2;
+        TYPE[Sprite.RED_CHECKER_H.ordinal()] = 2;
+        TYPE[Sprite.RED_CHECKER_S.ordinal()] = 3;
+        TYPE[Sprite.RED_CHECKER_S_H.ordinal()] = 3;
+
+        SIDE = new Random(0x5EEDL).nextLong();
+        KEYS_8 = generate(8);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Keys for a board size, indexed by (row * size + col) * 4 + type
+     *
+     * @param squaresPerSide
+     * @return
+     */
+    static long[] keys(int squaresPerSide) {
+        return squaresPerSide == 8 ? KEYS_8 : generate(squaresPerSide);
+    }
+
+    /**
+     * Piece type of a sprite, 0 black, 1 black king, 2 red, 3 red king
+     *
+     * @param s
+     * @return -1 for squares without a checker
+     */
+    static int type(Sprite s) {
+        return TYPE[s.ordinal()];
+    }
+
+    /**
+     * Key of a sprite on a square
+     *
+     * @param keys table from keys()
+     * @param square row * size + col
+     * @param s
+     * @return 0 for squares without a checker
+     */
+    static long key(long[] keys, int square, Sprite s) {
+        int type = TYPE[s.ordinal()];
+        return type < 0 ? 0 : keys[(square << 2) + type];
+    }
+
+    private static long[] generate(int squaresPerSide) {
+        Random rn = new Random(0xC4EC4E25L + squaresPerSide);
+        long[] keys = new long[squaresPerSide * squaresPerSide * 4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rn.nextLong();
+        }
+        return keys;
+    }
+}
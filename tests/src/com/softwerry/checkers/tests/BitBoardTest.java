@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.Sprite;
+import junit.framework.TestCase;
+
+/**
+ * Test for packed board positions
+ */
+public class BitBoardTest extends TestCase {
+
+    /**
+     * Verify square index maps back to the same playable square
+     */
+    public void testSquareIndex() {
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            assertEquals(sq, BitBoard.square(BitBoard.ROW[sq], BitBoard.COL[sq]));
+        }
+        assertEquals(-1, BitBoard.square(0, 0));
+        assertEquals(-1, BitBoard.square(8, 1));
+    }
+
+    /**
+     * Verify start position packs into 12 pieces per side
+     */
+    public void testStartPosition() {
+        GameEngine checkers = new GameEngine(GameEnum.BLACK);
+        BitBoard b = new BitBoard(checkers);
+
+        assertEquals(12, b.count(GameEnum.RED));
+        assertEquals(12, b.count(GameEnum.BLACK));
+        assertEquals(0, b.kings);
+        assertEquals(0, b.black & b.red);
+        assertSame(GameEnum.BLACK, b.sideToMove);
+    }
+
+    /**
+     * Verify pack and unpack round trip, highlights are dropped
+     */
+    public void testRoundTrip() {
+        GameEngine checkers = new GameEngine(GameEnum.RED);
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(2, 5, Sprite.RED_CHECKER_S);
+        checkers.Set(3, 4, Sprite.BLACK_CHECKER_H);
+
+        BitBoard b = new BitBoard(checkers);
+        GameEngine copy = new GameEngine(GameEnum.BLACK);
+        b.store(copy);
+
+        assertSame(Sprite.RED_CHECKER_S, copy.At(2, 5));
+        assertSame(Sprite.BLACK_CHECKER, copy.At(3, 4));
+        assertSame(Sprite.EMPTY, copy.At(1, 6));
+        assertSame(GameEnum.RED, copy.currentPlayer);
+        assertEquals(b, new BitBoard(copy));
+    }
+}
@@ -23,8 +23,20 @@
  */
 package com.softwerry.checkers.tests;
 
+import com.softwerry.checkers.AlphaBetaStrategy;
+import com.softwerry.checkers.AsyncSearch;
+import com.softwerry.checkers.BitBoard;
 import com.softwerry.checkers.CheckerAI;
 import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import com.softwerry.checkers.Sprite;
+import com.softwerry.checkers.TranspositionTable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import junit.framework.TestCase;
 
 /**
@@ -39,4 +51,157 @@ public class CheckerAITest extends TestCase {
         ai.RandomMove(checkers, true);
         ai.RandomMove(checkers, false);
     }
+
+    /**
+     * Verify alpha-beta takes the last black checker
+     */
+    public void testAlphaBetaTakesWin() {
+        GameEngine checkers = new GameEngine(GameEnum.RED);
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(3, 6, Sprite.RED_CHECKER);
+        checkers.Set(2, 5, Sprite.BLACK_CHECKER);
+
+        AlphaBetaStrategy search = new AlphaBetaStrategy(6, 0, 0);
+        assertEquals(Move.make(3, 6, 1, 4, Move.CAPTURE), search.selectMove(checkers));
+        assertTrue(search.getLastScore() >= AlphaBetaStrategy.WIN - AlphaBetaStrategy.MAX_PLY);
+    }
+
+    /**
+     * Verify search leaves the game as it found it
+     */
+    public void testAlphaBetaKeepsPosition() {
+        GameEngine checkers = new GameEngine();
+        BitBoard start = new BitBoard(checkers);
+
+        AlphaBetaStrategy search = new AlphaBetaStrategy(5, 0, 0);
+        assertTrue(search.selectMove(checkers) != Move.NONE);
+        assertEquals(5, search.getLastDepth());
+        assertEquals(start, new BitBoard(checkers));
+        assertEquals(0, checkers.historySize());
+    }
+
+    /**
+     * Verify a budget limited game between alpha-beta and random play
+     */
+    public void testPlayAlphaBetaGame() {
+        GameEngine checkers = new GameEngine();
+        CheckerAI red = new CheckerAI(new AlphaBetaStrategy(4, 20000, 0));
+        CheckerAI black = new CheckerAI();
+
+        for (int ply = 0; ply < 100; ply++) {
+            CheckerAI ai = checkers.currentPlayer == GameEnum.RED ? red : black;
+            if (!ai.PlayMove(checkers)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Verify a parallel search agrees with a single thread at fixed depth
+     */
+    public void testParallelSearch() {
+        GameEngine checkers = new GameEngine();
+        checkers.makeMove(Move.make(2, 5, 3, 4, 0));
+        checkers.makeMove(Move.make(3, 2, 4, 3, 0));
+        BitBoard position = new BitBoard(checkers);
+
+        AlphaBetaStrategy single = new AlphaBetaStrategy(6, 0, 0);
+        single.selectMove(checkers);
+
+        AlphaBetaStrategy parallel = new AlphaBetaStrategy(6, 0, 0);
+        parallel.threads = 4;
+        int move = parallel.selectMove(checkers);
+        parallel.shutdown();
+
+        assertTrue(move != Move.NONE);
+        assertEquals(6, parallel.getLastDepth());
+        assertEquals(single.getLastScore(), parallel.getLastScore());
+        assertEquals(position, new BitBoard(checkers));
+    }
+
+    /**
+     * Verify background search reports once and only for the last start
+     */
+    public void testAsyncSearch() throws InterruptedException {
+        GameEngine checkers = new GameEngine();
+        BitBoard position = new BitBoard(checkers);
+        final BlockingQueue<Integer> results = new LinkedBlockingQueue<Integer>();
+        AsyncSearch search = new AsyncSearch(new AlphaBetaStrategy(AlphaBetaStrategy.MAX_PLY, 0, 200),
+                new Executor() {
+                    public void execute(Runnable r) {
+                        r.run();
+                    }
+                });
+        AsyncSearch.Listener listener = new AsyncSearch.Listener() {
+            public void onMoveSelected(int move) {
+                results.add(move);
+            }
+        };
+
+        search.start(checkers, listener);
+        search.cancel();
+        search.start(checkers, listener);
+        assertEquals(position, new BitBoard(checkers));
+
+        Integer move = results.poll(5, TimeUnit.SECONDS);
+        assertNotNull(move);
+        assertTrue(move != Move.NONE);
+        assertNull(results.poll(500, TimeUnit.MILLISECONDS));
+        assertFalse(search.isSearching());
+        search.shutdown();
+
+        CheckerAI ai = new CheckerAI();
+        assertTrue(ai.PlayMove(checkers, move));
+        assertSame(GameEnum.BLACK, checkers.currentPlayer);
+    }
+
+    /**
+     * Verify pondering answers at once on a hit and still answers on a miss
+     */
+    public void testPonder() throws InterruptedException {
+        GameEngine checkers = new GameEngine();
+        final BlockingQueue<Integer> results = new LinkedBlockingQueue<Integer>();
+        AlphaBetaStrategy strategy = new AlphaBetaStrategy(AlphaBetaStrategy.MAX_PLY, 0, 1000);
+        AsyncSearch search = new AsyncSearch(strategy, new Executor() {
+            public void execute(Runnable r) {
+                r.run();
+            }
+        });
+        AsyncSearch.Listener listener = new AsyncSearch.Listener() {
+            public void onMoveSelected(int move) {
+                results.add(move);
+            }
+        };
+
+        strategy.timeLimitMillis = 100;
+        checkers.makeMove(strategy.selectMove(checkers));
+        strategy.timeLimitMillis = 1000;
+        int reply = TranspositionTable.move(strategy.getTable().probe(checkers.getHash()));
+        assertTrue(search.ponder(checkers));
+        assertTrue(search.isPondering());
+        assertFalse(search.isSearching());
+        Thread.sleep(1200);
+
+        // hit, pondered longer than the time limit
+        checkers.makeMove(reply);
+        long start = System.nanoTime();
+        search.start(checkers, listener);
+        Integer move = results.poll(5, TimeUnit.SECONDS);
+        assertNotNull(move);
+        assertTrue((System.nanoTime() - start) / 1000000 < 500);
+        assertFalse(search.isPondering());
+        checkers.makeMove(move);
+
+        // miss, play anything but the expected reply
+        assertTrue(search.ponder(checkers));
+        reply = TranspositionTable.move(strategy.getTable().probe(checkers.getHash()));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(checkers, moves);
+        checkers.makeMove(moves[0] == reply && count > 1 ? moves[1] : moves[0]);
+        search.start(checkers, listener);
+        assertFalse(search.isPondering());
+        assertNotNull(results.poll(5, TimeUnit.SECONDS));
+        assertNull(results.poll(300, TimeUnit.MILLISECONDS));
+        search.shutdown();
+    }
 }
@@ -83,14 +83,14 @@ public class CheckersActivityTest extends ActivityInstrumentationTestCase2<Simpl
 
         assertSame("First checker is not selected.",
                 Sprite.RED_CHECKER_H,
-                checkerBoardView.gameEngine.getState()[clickRow][clickCol]);
+                checkerBoardView.gameEngine.At(clickRow, clickCol));
 
         assertSame("Next move is not highlighted.",
                 Sprite.EMPTY_NEXT,
-                checkerBoardView.gameEngine.getState()[clickRow - 1][clickCol - 1]);
+                checkerBoardView.gameEngine.At(clickRow - 1, clickCol - 1));
         assertSame("Next move is not highlighted.",
                 Sprite.EMPTY_NEXT,
-                checkerBoardView.gameEngine.getState()[clickRow + 1][clickCol - 1]);
+                checkerBoardView.gameEngine.At(clickRow + 1, clickCol - 1));
         decorView.invalidate();
     }
 
@@ -140,11 +140,11 @@ public class CheckersActivityTest extends ActivityInstrumentationTestCase2<Simpl
     public void testBlackWinAlert() {
         final View decorView = checkersActivity.getWindow().getDecorView();
 
-        checkerBoardView.gameEngine.board
-                = checkerBoardView.gameEngine.GenEmptyBoardState();
+        checkerBoardView.gameEngine.setBoard(
+                checkerBoardView.gameEngine.GenEmptyBoardState());
         checkerBoardView.gameEngine.currentPlayer = GameEnum.BLACK;
-        checkerBoardView.gameEngine.board[3][4] = Sprite.BLACK_CHECKER;
-        checkerBoardView.gameEngine.board[2][5] = Sprite.RED_CHECKER;
+        checkerBoardView.gameEngine.Set(3, 4, Sprite.BLACK_CHECKER);
+        checkerBoardView.gameEngine.Set(2, 5, Sprite.RED_CHECKER);
 
         decorView.dispatchTouchEvent(MotionEvent.obtain(
                 1000, 1000, MotionEvent.ACTION_DOWN,
@@ -165,10 +165,10 @@ public class CheckersActivityTest extends ActivityInstrumentationTestCase2<Simpl
     public void testRedWinAlert() {
         final View decorView = checkersActivity.getWindow().getDecorView();
 
-        checkerBoardView.gameEngine.board
-                = checkerBoardView.gameEngine.GenEmptyBoardState();
-        checkerBoardView.gameEngine.board[2][5] = Sprite.RED_CHECKER;
-        checkerBoardView.gameEngine.board[3][4] = Sprite.BLACK_CHECKER;
+        checkerBoardView.gameEngine.setBoard(
+                checkerBoardView.gameEngine.GenEmptyBoardState());
+        checkerBoardView.gameEngine.Set(2, 5, Sprite.RED_CHECKER);
+        checkerBoardView.gameEngine.Set(3, 4, Sprite.BLACK_CHECKER);
 
         decorView.dispatchTouchEvent(MotionEvent.obtain(
                 1000, 1000, MotionEvent.ACTION_DOWN,
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.EndgameDatabase;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * Test for endgame database indexing and lookup
+ */
+public class EndgameDatabaseTest extends TestCase {
+
+    /**
+     * Verify every number of a slice maps to its own position and back
+     */
+    public void testIndex() {
+        int[][] slices = {{1, 0, 1, 1}, {2, 0, 0, 1}, {0, 1, 2, 0}};
+        BitBoard b = new BitBoard();
+        for (int[] slice : slices) {
+            long size = EndgameDatabase.sliceSize(slice[0], slice[1], slice[2], slice[3]);
+            Set<BitBoard> seen = new HashSet<BitBoard>();
+            for (long index = 0; index < size; index++) {
+                EndgameDatabase.position(slice, index, b);
+                assertEquals(slice[0], Integer.bitCount(b.black & ~b.kings));
+                assertEquals(slice[1], Integer.bitCount(b.black & b.kings));
+                assertEquals(slice[2], Integer.bitCount(b.red & ~b.kings));
+                assertEquals(slice[3], Integer.bitCount(b.red & b.kings));
+                assertEquals(0, b.black & b.red);
+                assertEquals(index, EndgameDatabase.index(b));
+                assertTrue(seen.add(new BitBoard(b)));
+            }
+        }
+    }
+
+    /**
+     * Verify slices only lead to earlier slices by captures and promotions
+     */
+    public void testSliceOrder() {
+        List<int[]> slices = EndgameDatabase.slices(4);
+        for (int i = 1; i < slices.size(); i++) {
+            int[] a = slices.get(i - 1);
+            int[] b = slices.get(i);
+            int piecesA = a[0] + a[1] + a[2] + a[3];
+            int piecesB = b[0] + b[1] + b[2] + b[3];
+            assertTrue(piecesA < piecesB || piecesA == piecesB && a[0] + a[2] <= b[0] + b[2]);
+        }
+    }
+
+    /**
+     * Verify values written for each side to move are read back mapped
+     */
+    public void testProbe() throws IOException {
+        List<int[]> slices = EndgameDatabase.slices(3);
+        List<byte[]> values = new ArrayList<byte[]>();
+        for (int[] slice : slices) {
+            byte[] v = new byte[(int) EndgameDatabase.sliceSize(slice[0], slice[1], slice[2], slice[3]) * 2];
+            for (int i = 0; i < v.length; i++) {
+                v[i] = (byte) (i * 31 + slice[0] + slice[3]);
+            }
+            values.add(v);
+        }
+        File file = File.createTempFile("endgames", ".db");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            EndgameDatabase.write(out, 3, slices, values);
+            out.close();
+
+            EndgameDatabase db = EndgameDatabase.open(file);
+            assertEquals(3, db.getMaxPieces());
+            BitBoard b = new BitBoard();
+            for (int s = 0; s < slices.size(); s++) {
+                int[] slice = slices.get(s);
+                for (int index = 0; index < values.get(s).length / 2; index += 7) {
+                    EndgameDatabase.position(slice, index, b);
+                    b.sideToMove = GameEnum.RED;
+                    assertEquals(values.get(s)[index * 2], db.probe(b));
+                    b.sideToMove = GameEnum.BLACK;
+                    assertEquals(values.get(s)[index * 2 + 1], db.probe(b));
+                }
+            }
+
+            // one side gone or too many checkers
+            b.black = 0;
+            assertEquals(EndgameDatabase.NOT_FOUND, db.probe(b));
+            assertEquals(EndgameDatabase.NOT_FOUND, db.probe(new BitBoard(new GameEngine())));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Verify the value byte round trips win and loss distances
+     */
+    public void testValues() {
+        assertEquals(5, EndgameDatabase.plies(EndgameDatabase.win(5)));
+        assertEquals(0, EndgameDatabase.plies(EndgameDatabase.loss(0)));
+        assertEquals(12, EndgameDatabase.plies(EndgameDatabase.loss(12)));
+        assertTrue(EndgameDatabase.loss(0) < 0);
+        assertEquals(127, EndgameDatabase.plies(EndgameDatabase.win(500)));
+    }
+}
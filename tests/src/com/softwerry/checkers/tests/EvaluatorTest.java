@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.Evaluator;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.MoveGenerator;
+import com.softwerry.checkers.Sprite;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Test for the incremental evaluation
+ */
+public class EvaluatorTest extends TestCase {
+
+    /**
+     * Verify the running score matches a fresh count through make and unmake
+     */
+    public void testIncremental() {
+        Random rn = new Random(4);
+        int[] moves = new int[MoveGenerator.capacity(10)];
+        assertEquals(0, new GameEngine().getPositionScore());
+        for (int size = 8; size <= 10; size += 2) {
+            GameEngine checkers = new GameEngine(size);
+            int[] scores = new int[300];
+            int ply = 0;
+            for (; ply < scores.length; ply++) {
+                int count = MoveGenerator.generate(checkers, moves);
+                if (count == 0) {
+                    break;
+                }
+                scores[ply] = checkers.getPositionScore();
+                assertEquals(new GameEngine(checkers).getPositionScore(), scores[ply]);
+                checkers.makeMove(moves[rn.nextInt(count)]);
+            }
+            while (ply > 0) {
+                checkers.unmakeMove();
+                assertEquals(scores[--ply], checkers.getPositionScore());
+            }
+        }
+    }
+
+    /**
+     * Verify weights times features give the evaluation from red's side
+     */
+    public void testFeatures() {
+        Random rn = new Random(5);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        double[] features = new double[Evaluator.WEIGHTS];
+        int[] weights = Evaluator.DEFAULT.getWeights();
+        GameEngine checkers = new GameEngine();
+        for (int ply = 0; ply < 200; ply++) {
+            int count = MoveGenerator.generate(checkers, moves);
+            if (count == 0) {
+                break;
+            }
+            Evaluator.features(checkers, count, features);
+            double dot = 0;
+            for (int i = 0; i < weights.length; i++) {
+                dot += weights[i] * features[i];
+            }
+            int score = Evaluator.DEFAULT.evaluate(checkers, count);
+            assertEquals(checkers.currentPlayer == GameEnum.RED ? score : -score, (int) dot);
+            checkers.makeMove(moves[rn.nextInt(count)]);
+        }
+    }
+
+    /**
+     * Verify other weights are picked up by a running game
+     */
+    public void testSetEvaluator() {
+        int[] weights = new int[Evaluator.WEIGHTS];
+        weights[Evaluator.KING] = 1;
+        weights[Evaluator.MOBILITY] = 2;
+        GameEngine checkers = new GameEngine();
+        checkers.setEvaluator(new Evaluator(weights));
+        assertEquals(0, checkers.getPositionScore());
+        checkers.Set(2, 1, Sprite.RED_CHECKER_S);
+        assertEquals(1, checkers.getPositionScore());
+        assertEquals(1 + 2 * 7, checkers.getEvaluator().evaluate(checkers, 7));
+        checkers.currentPlayer = GameEnum.BLACK;
+        assertEquals(-1 + 2 * 7, checkers.getEvaluator().evaluate(checkers, 7));
+    }
+}
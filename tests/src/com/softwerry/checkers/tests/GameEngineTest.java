@@ -23,9 +23,13 @@
  */
 package com.softwerry.checkers.tests;
 
+import com.softwerry.checkers.BitBoard;
 import com.softwerry.checkers.GameEngine;
 import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
 import com.softwerry.checkers.Sprite;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -38,7 +42,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testBlackCheckerSimpleMoves() {
         GameEngine checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(1, 2, Sprite.BLACK_CHECKER);
 
         checkers.Click(1, 2);
@@ -49,7 +53,7 @@ public class GameEngineTest extends TestCase {
         assertSame(Sprite.EMPTY, checkers.At(2, 1));
 
         checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(1, 2, Sprite.BLACK_CHECKER);
         checkers.Set(0, 3, Sprite.BLACK_CHECKER);
 
@@ -60,7 +64,7 @@ public class GameEngineTest extends TestCase {
 
         // no moves available
         checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(1, 2, Sprite.BLACK_CHECKER);
         checkers.Set(0, 3, Sprite.BLACK_CHECKER);
         checkers.Set(2, 3, Sprite.BLACK_CHECKER);
@@ -80,7 +84,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testRedCheckerSimpleMoves() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(1, 6, Sprite.RED_CHECKER);
 
         // check for 2 highlighted moves
@@ -92,7 +96,7 @@ public class GameEngineTest extends TestCase {
         assertSame(Sprite.EMPTY, checkers.At(2, 7));
 
         checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(1, 6, Sprite.RED_CHECKER);
         checkers.Set(0, 5, Sprite.RED_CHECKER);
 
@@ -103,7 +107,7 @@ public class GameEngineTest extends TestCase {
 
         // no moves available
         checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(1, 6, Sprite.RED_CHECKER);
         checkers.Set(0, 5, Sprite.RED_CHECKER);
         checkers.Set(2, 5, Sprite.RED_CHECKER);
@@ -123,7 +127,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testRedCheckerJumpMove() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER);
 
@@ -143,7 +147,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testBlackSuperCheckerMove() {
         GameEngine checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(2, 3, Sprite.BLACK_CHECKER_S);
 
         checkers.Click(2, 3);
@@ -154,7 +158,7 @@ public class GameEngineTest extends TestCase {
         assertSame(Sprite.EMPTY_NEXT, checkers.At(3, 2));
 
         checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(2, 3, Sprite.BLACK_CHECKER_S);
         checkers.Set(3, 4, Sprite.RED_CHECKER);
 
@@ -171,7 +175,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testRedSuperCheckerMove() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
 
         checkers.Set(2, 5, Sprite.RED_CHECKER_S);
 
@@ -188,7 +192,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testRedSuperCheckerEdgeMove() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(2, 7, Sprite.RED_CHECKER_S);
 
         checkers.Click(2, 7);
@@ -202,7 +206,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testRedBeatsBlackMove() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER);
 
@@ -222,7 +226,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testBlackBeatsRedMove() {
         GameEngine checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER);
 
@@ -242,7 +246,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testSuperRedBeatsBlackMove() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER_S);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER);
 
@@ -262,7 +266,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testSuperBlackBeatsRedMove() {
         GameEngine checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER_S);
 
@@ -282,7 +286,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testSuperBlackBeatsSuperRedMove() {
         GameEngine checkers = new GameEngine(GameEnum.BLACK);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER_S);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER_S);
 
@@ -302,7 +306,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testSuperRedBeatsSuperBlackMove() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER_S);
         checkers.Set(2, 5, Sprite.BLACK_CHECKER_S);
 
@@ -322,7 +326,7 @@ public class GameEngineTest extends TestCase {
      */
     public void testMoveTurns() {
         GameEngine checkers = new GameEngine(GameEnum.RED);
-        checkers.board = checkers.GenEmptyBoardState();
+        checkers.setBoard(checkers.GenEmptyBoardState());
         checkers.Set(3, 6, Sprite.RED_CHECKER);
         checkers.Set(2, 1, Sprite.BLACK_CHECKER);
 
@@ -347,4 +351,237 @@ public class GameEngineTest extends TestCase {
         assertSame(Sprite.EMPTY_NEXT, checkers.At(1, 2));
         assertSame(Sprite.EMPTY_NEXT, checkers.At(3, 2));
     }
+
+    /**
+     * Verify make and unmake restore captured and promoted checkers
+     */
+    public void testMakeUnmakeMove() {
+        GameEngine checkers = new GameEngine(GameEnum.BLACK);
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(3, 6, Sprite.RED_CHECKER);
+        checkers.Set(2, 5, Sprite.BLACK_CHECKER);
+
+        checkers.makeMove(Move.make(2, 5, 4, 7, Move.CAPTURE | Move.PROMOTE));
+        assertSame(Sprite.EMPTY, checkers.At(2, 5));
+        assertSame(Sprite.EMPTY, checkers.At(3, 6));
+        assertSame(Sprite.BLACK_CHECKER_S, checkers.At(4, 7));
+        assertSame(GameEnum.RED, checkers.currentPlayer);
+
+        assertEquals(Move.make(2, 5, 4, 7, Move.CAPTURE | Move.PROMOTE),
+                checkers.unmakeMove());
+        assertSame(Sprite.BLACK_CHECKER, checkers.At(2, 5));
+        assertSame(Sprite.RED_CHECKER, checkers.At(3, 6));
+        assertSame(Sprite.EMPTY, checkers.At(4, 7));
+        assertSame(GameEnum.BLACK, checkers.currentPlayer);
+        assertEquals(0, checkers.historySize());
+    }
+
+    /**
+     * Verify a long random line unwinds back to the start position
+     */
+    public void testUnmakeRandomGame() {
+        Random rn = new Random(3);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        GameEngine checkers = new GameEngine();
+        BitBoard start = new BitBoard(checkers);
+        BitBoard packed = new BitBoard(checkers);
+
+        for (int ply = 0; ply < 300; ply++) {
+            int count = MoveGenerator.generate(checkers, moves);
+            if (count == 0) {
+                break;
+            }
+            int move = moves[rn.nextInt(count)];
+            checkers.makeMove(move);
+            packed.makeMove(move);
+            assertEquals(packed, new BitBoard(checkers));
+        }
+        while (checkers.historySize() > 0) {
+            checkers.unmakeMove();
+        }
+        assertEquals(start, new BitBoard(checkers));
+    }
+
+    /**
+     * Verify incremental position key through clicks, hints and take backs
+     */
+    public void testPositionHash() {
+        Random rn = new Random(11);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        GameEngine checkers = new GameEngine();
+        long start = checkers.getHash();
+        assertEquals(checkers.computeHash(), start);
+
+        for (int ply = 0; ply < 200; ply++) {
+            int count = MoveGenerator.generate(checkers, moves);
+            if (count == 0) {
+                break;
+            }
+            int move = moves[rn.nextInt(count)];
+            long before = checkers.getHash();
+
+            // selecting a checker doesn't change the position
+            checkers.Click(Move.fromRow(move), Move.fromCol(move));
+            assertEquals(before, checkers.getHash());
+
+            checkers.Click(Move.toRow(move), Move.toCol(move));
+            assertEquals(checkers.computeHash(), checkers.getHash());
+            assertTrue(before != checkers.getHash());
+        }
+
+        checkers = new GameEngine();
+        for (int ply = 0; ply < 100; ply++) {
+            int count = MoveGenerator.generate(checkers, moves);
+            if (count == 0) {
+                break;
+            }
+            checkers.makeMove(moves[rn.nextInt(count)]);
+            assertEquals(checkers.computeHash(), checkers.getHash());
+        }
+        while (checkers.historySize() > 0) {
+            checkers.unmakeMove();
+        }
+        assertEquals(start, checkers.getHash());
+    }
+
+    /**
+     * Verify the same position reached in a different order has the same key
+     */
+    public void testPositionHashTransposition() {
+        GameEngine a = new GameEngine(GameEnum.RED);
+        a.makeMove(Move.make(0, 5, 1, 4, 0));
+        a.makeMove(Move.make(1, 2, 0, 3, 0));
+        a.makeMove(Move.make(2, 5, 3, 4, 0));
+
+        GameEngine b = new GameEngine(GameEnum.RED);
+        b.makeMove(Move.make(2, 5, 3, 4, 0));
+        b.makeMove(Move.make(1, 2, 0, 3, 0));
+        b.makeMove(Move.make(0, 5, 1, 4, 0));
+
+        assertEquals(a.getHash(), b.getHash());
+
+        // a board set up from scratch is picked up
+        b.setBoard(b.GenEmptyBoardState());
+        b.Set(3, 6, Sprite.RED_CHECKER);
+        assertEquals(b.computeHash(), b.getHash());
+        assertTrue(a.getHash() != b.getHash());
+
+        // the position handed out is a copy
+        b.getState()[3][6] = Sprite.EMPTY;
+        assertSame(Sprite.RED_CHECKER, b.At(3, 6));
+        assertEquals(b.computeHash(), b.getHash());
+    }
+
+    /**
+     * Verify piece counts follow captures and promotions, and the last
+     * capture ends the game
+     */
+    public void testPieceCounts() {
+        GameEngine checkers = new GameEngine(GameEnum.BLACK);
+        assertEquals(12, checkers.getPieceCount(GameEnum.RED));
+        assertEquals(12, checkers.getPieceCount(GameEnum.BLACK));
+        assertEquals(0, checkers.getScore(GameEnum.RED));
+
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(3, 6, Sprite.RED_CHECKER);
+        checkers.Set(2, 5, Sprite.BLACK_CHECKER);
+        assertEquals(1, checkers.getPieceCount(GameEnum.RED));
+        assertEquals(11, checkers.getScore(GameEnum.BLACK));
+
+        // scores are read only
+        checkers.getScore(GameEnum.RED);
+        assertSame(GameEnum.PLAY, checkers.gameState);
+
+        checkers.Click(2, 5);
+        checkers.Click(4, 7);
+        assertEquals(0, checkers.getPieceCount(GameEnum.RED));
+        assertEquals(1, checkers.getKingCount(GameEnum.BLACK));
+        assertEquals(12, checkers.getScore(GameEnum.BLACK));
+        assertSame(GameEnum.GAME_OVER, checkers.gameState);
+    }
+
+    /**
+     * Verify piece lists against a board scan through moves and take backs
+     */
+    public void testPieceSquares() {
+        Random rn = new Random(5);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        GameEngine checkers = new GameEngine();
+        assertPieceSquares(checkers);
+
+        for (int ply = 0; ply < 200; ply++) {
+            int count = MoveGenerator.generate(checkers, moves);
+            if (count == 0) {
+                break;
+            }
+            checkers.makeMove(moves[rn.nextInt(count)]);
+            assertPieceSquares(checkers);
+            if (ply % 7 == 6) {
+                checkers.unmakeMove();
+                assertPieceSquares(checkers);
+            }
+        }
+        while (checkers.historySize() > 0) {
+            checkers.unmakeMove();
+        }
+        assertPieceSquares(checkers);
+    }
+
+    private static void assertPieceSquares(GameEngine checkers) {
+        GameEnum[] sides = {GameEnum.BLACK, GameEnum.RED};
+        for (GameEnum side : sides) {
+            boolean[] seen = new boolean[checkers.squaresPerSide * checkers.squaresPerSide];
+            for (int i = 0; i < checkers.getPieceCount(side); i++) {
+                int square = checkers.getPieceSquare(side, i);
+                assertFalse(seen[square]);
+                seen[square] = true;
+            }
+            for (int row = 0; row < checkers.squaresPerSide; row++) {
+                for (int col = 0; col < checkers.squaresPerSide; col++) {
+                    boolean mine = side == GameEnum.RED
+                            ? checkers.isRed(row, col) : checkers.isBlack(row, col);
+                    assertEquals(mine, seen[row * checkers.squaresPerSide + col]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Verify selection and hints leave the position untouched
+     */
+    public void testSelectionOverlay() {
+        GameEngine checkers = new GameEngine(GameEnum.BLACK);
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(1, 2, Sprite.BLACK_CHECKER);
+        checkers.Set(2, 3, Sprite.RED_CHECKER_S);
+        checkers.Set(3, 4, Sprite.BLACK_CHECKER);
+        checkers.Set(2, 1, Sprite.RED_CHECKER);
+        long hash = checkers.getHash();
+
+        checkers.Click(1, 2);
+        assertSame(Sprite.BLACK_CHECKER_H, checkers.At(1, 2));
+        assertSame(Sprite.EMPTY_NEXT, checkers.At(0, 3));
+        // jump blocked by a black checker behind the red king
+        assertSame(Sprite.BLACK_CHECKER, checkers.At(3, 4));
+        assertSame(Sprite.BLACK_CHECKER, checkers.getState()[1][2]);
+        assertSame(Sprite.EMPTY, checkers.getState()[0][3]);
+        assertEquals(hash, checkers.getHash());
+        assertEquals(1, checkers.getSelected().row);
+        assertSame(Sprite.BLACK_CHECKER_H, checkers.getSelected().checkerPiece);
+
+        // red checkers can not be selected on black's turn
+        checkers.Click(2, 1);
+        assertSame(Sprite.BLACK_CHECKER_H, checkers.At(1, 2));
+
+        checkers.Click(3, 4);
+        assertSame(Sprite.BLACK_CHECKER, checkers.At(1, 2));
+        assertSame(Sprite.BLACK_CHECKER_H, checkers.At(3, 4));
+        assertSame(Sprite.EMPTY, checkers.At(0, 3));
+
+        checkers.Click(3, 4);
+        assertNull(checkers.getSelected());
+        assertSame(Sprite.BLACK_CHECKER, checkers.At(3, 4));
+        assertEquals(hash, checkers.getHash());
+        assertEquals(hash, checkers.computeHash());
+    }
 }
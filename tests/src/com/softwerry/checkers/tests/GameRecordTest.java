@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.GameRecord;
+import com.softwerry.checkers.GameRecordReader;
+import com.softwerry.checkers.GameRecordWriter;
+import com.softwerry.checkers.MoveGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Test for binary game records
+ */
+public class GameRecordTest extends TestCase {
+
+    /**
+     * Verify every generated move survives the two byte form
+     */
+    public void testEncodeMoves() {
+        Random rn = new Random(1);
+        int[] moves = new int[MoveGenerator.capacity(10)];
+        for (int size = 7; size <= 10; size++) {
+            GameEngine checkers = new GameEngine(size);
+            for (int ply = 0; ply < 300; ply++) {
+                int count = MoveGenerator.generate(checkers, moves);
+                if (count == 0) {
+                    break;
+                }
+                for (int i = 0; i < count; i++) {
+                    assertEquals(moves[i], GameRecord.decode(GameRecord.encode(moves[i], size), size));
+                }
+                checkers.makeMove(moves[rn.nextInt(count)]);
+            }
+        }
+    }
+
+    /**
+     * Verify games stream out and back with header and moves
+     */
+    public void testWriteRead() throws IOException {
+        Random rn = new Random(2);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        GameRecord[] games = new GameRecord[20];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes);
+        for (int g = 0; g < games.length; g++) {
+            GameEngine checkers = new GameEngine(g % 2 == 0 ? GameEnum.RED : GameEnum.BLACK);
+            games[g] = new GameRecord(checkers);
+            for (int ply = 0; ply < 200; ply++) {
+                int count = MoveGenerator.generate(checkers, moves);
+                if (count == 0) {
+                    games[g].result = checkers.currentPlayer == GameEnum.RED
+                            ? GameEnum.BLACK : GameEnum.RED;
+                    break;
+                }
+                int move = moves[rn.nextInt(count)];
+                checkers.makeMove(move);
+                games[g].add(move);
+            }
+            writer.write(games[g]);
+        }
+        writer.close();
+
+        GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(bytes.toByteArray()));
+        GameRecord record = new GameRecord();
+        for (int g = 0; g < games.length; g++) {
+            assertTrue(reader.read(record));
+            assertEquals(games[g].size, record.size);
+            assertSame(games[g].firstPlayer, record.firstPlayer);
+            assertSame(games[g].result, record.result);
+            assertEquals(games[g].length(), record.length());
+            assertEquals(new BitBoard(games[g].replay(games[g].length())),
+                    new BitBoard(record.replay(record.length())));
+        }
+        assertFalse(reader.read(record));
+        reader.close();
+    }
+
+    /**
+     * Verify a cut file and a foreign file are reported
+     */
+    public void testBrokenFile() throws IOException {
+        GameEngine checkers = new GameEngine();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        GameRecord game = new GameRecord(checkers);
+        MoveGenerator.generate(checkers, moves);
+        game.add(moves[0]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(bytes);
+        writer.write(game);
+        writer.close();
+        byte[] data = bytes.toByteArray();
+
+        GameRecordReader reader = new GameRecordReader(
+                new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)));
+        try {
+            reader.read(new GameRecord());
+            fail();
+        } catch (IOException expected) {
+        }
+
+        data[0] = 'X';
+        try {
+            new GameRecordReader(new ByteArrayInputStream(data));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}
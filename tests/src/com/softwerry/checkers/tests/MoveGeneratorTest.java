@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import com.softwerry.checkers.Sprite;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Test for legal move generation
+ */
+public class MoveGeneratorTest extends TestCase {
+
+    /**
+     * Verify 7 opening moves for either side
+     */
+    public void testStartPosition() {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        GameEngine checkers = new GameEngine(GameEnum.RED);
+        assertEquals(7, MoveGenerator.generate(checkers, moves));
+        assertEquals(7, MoveGenerator.generate(new BitBoard(checkers), moves));
+
+        checkers = new GameEngine(GameEnum.BLACK);
+        assertEquals(7, MoveGenerator.generate(checkers, moves));
+        assertEquals(7, MoveGenerator.generate(new BitBoard(checkers), moves));
+    }
+
+    /**
+     * Verify captures come first and the board is left alone
+     */
+    public void testCaptureFirst() {
+        GameEngine checkers = new GameEngine(GameEnum.RED);
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(3, 6, Sprite.RED_CHECKER);
+        checkers.Set(2, 5, Sprite.BLACK_CHECKER);
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        assertEquals(2, MoveGenerator.generate(checkers, moves));
+        assertEquals(Move.make(3, 6, 1, 4, Move.CAPTURE), moves[0]);
+        assertEquals(Move.make(3, 6, 4, 5, 0), moves[1]);
+
+        assertSame(Sprite.RED_CHECKER, checkers.At(3, 6));
+        assertSame(Sprite.EMPTY, checkers.At(1, 4));
+        assertSame(Sprite.EMPTY, checkers.At(4, 5));
+    }
+
+    /**
+     * Verify promotion flag and king moves in all four directions
+     */
+    public void testPromotionAndKing() {
+        GameEngine checkers = new GameEngine(GameEnum.BLACK);
+        checkers.setBoard(checkers.GenEmptyBoardState());
+        checkers.Set(3, 6, Sprite.BLACK_CHECKER);
+        checkers.Set(2, 1, Sprite.BLACK_CHECKER_S);
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(checkers, moves);
+        assertEquals(6, count);
+        assertTrue(contains(moves, count, Move.make(3, 6, 2, 7, Move.PROMOTE)));
+        assertTrue(contains(moves, count, Move.make(2, 1, 1, 0, 0)));
+        assertTrue(contains(moves, count, Move.make(2, 1, 3, 0, 0)));
+    }
+
+    /**
+     * Verify generated moves match the Click hints and the packed board
+     * generator through random games
+     */
+    public void testMatchesClick() {
+        Random rn = new Random(7);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] packed = new int[MoveGenerator.MAX_MOVES];
+
+        for (int game = 0; game < 20; game++) {
+            GameEngine checkers = new GameEngine();
+            for (int ply = 0; ply < 200; ply++) {
+                int count = MoveGenerator.generate(checkers, moves);
+                assertEquals(count, MoveGenerator.generate(new BitBoard(checkers), packed));
+                int[] a = Arrays.copyOf(moves, count);
+                int[] b = Arrays.copyOf(packed, count);
+                Arrays.sort(a);
+                Arrays.sort(b);
+                assertTrue(Arrays.equals(a, b));
+                if (count == 0) {
+                    break;
+                }
+
+                int move = moves[rn.nextInt(count)];
+                checkers.Click(Move.fromRow(move), Move.fromCol(move));
+                assertTrue(checkers.Click(Move.toRow(move), Move.toCol(move)));
+            }
+        }
+    }
+
+    /**
+     * Verify leaf counts of the game tree from the start position, see
+     * tools/Perft for deeper counts
+     */
+    public void testPerft() {
+        long[] expected = {1L, 7L, 49L, 379L, 2872L, 23582L};
+        for (int depth = 0; depth < expected.length; depth++) {
+            assertEquals(expected[depth], perft(new GameEngine(), depth));
+        }
+    }
+
+    private long perft(GameEngine e, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(e, moves);
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            e.makeMove(moves[i]);
+            nodes += perft(e, depth - 1);
+            e.unmakeMove();
+        }
+        return nodes;
+    }
+
+    private boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.BookStrategy;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import com.softwerry.checkers.MoveStrategy;
+import com.softwerry.checkers.OpeningBook;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Test for opening book lookup
+ */
+public class OpeningBookTest extends TestCase {
+
+    private static OpeningBook.Entry entry(long hash, int move, int games, int points) {
+        OpeningBook.Entry entry = new OpeningBook.Entry(hash, move);
+        entry.games = games;
+        entry.points = points;
+        return entry;
+    }
+
+    private static OpeningBook book(List<OpeningBook.Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OpeningBook.write(bytes, 8, entries);
+        return OpeningBook.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /**
+     * Verify the best scoring move is found among many positions
+     */
+    public void testProbe() throws IOException {
+        GameEngine checkers = new GameEngine();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        MoveGenerator.generate(checkers, moves);
+
+        List<OpeningBook.Entry> entries = new ArrayList<OpeningBook.Entry>();
+        Random rn = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            entries.add(entry(rn.nextLong(), moves[0], 5, 10));
+        }
+        long start = checkers.getHash();
+        entries.add(entry(start, moves[0], 10, 10));
+        entries.add(entry(start, moves[1], 4, 6));
+        entries.add(entry(start, moves[2], 8, 12));
+
+        GameEngine next = new GameEngine(checkers);
+        next.makeMove(moves[2]);
+        // a move that is not legal where the hash points
+        entries.add(entry(next.getHash(), moves[0], 20, 40));
+
+        OpeningBook book = book(entries);
+        assertEquals(entries.size(), book.getCount());
+        assertEquals(moves[2], book.probe(checkers));
+        assertEquals(Move.NONE, book.probe(next));
+        next.unmakeMove();
+        next.makeMove(moves[1]);
+        assertEquals(Move.NONE, book.probe(next));
+        assertEquals(Move.NONE, book.probe(new GameEngine(10)));
+    }
+
+    /**
+     * Verify book moves are played without asking the search
+     */
+    public void testBookStrategy() throws IOException {
+        GameEngine checkers = new GameEngine();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        MoveGenerator.generate(checkers, moves);
+        List<OpeningBook.Entry> entries = new ArrayList<OpeningBook.Entry>();
+        entries.add(entry(checkers.getHash(), moves[3], 1, 2));
+
+        final int[] searched = new int[1];
+        BookStrategy strategy = new BookStrategy(book(entries), new MoveStrategy() {
+            public int selectMove(GameEngine e) {
+                searched[0]++;
+                return Move.NONE;
+            }
+        });
+        assertEquals(moves[3], strategy.selectMove(checkers));
+        assertEquals(0, searched[0]);
+        checkers.makeMove(moves[3]);
+        assertEquals(Move.NONE, strategy.selectMove(checkers));
+        assertEquals(1, searched[0]);
+    }
+
+    /**
+     * Verify a foreign file is reported
+     */
+    public void testBrokenFile() {
+        try {
+            OpeningBook.read(new ByteArrayInputStream(new byte[]{'C', 'K', 'R', 'S', 1, 8, 0, 0, 0, 0}));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tests;
+
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.TranspositionTable;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Test for the shared transposition table
+ */
+public class TranspositionTableTest extends TestCase {
+
+    /**
+     * Verify stored fields come back unchanged
+     */
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(65536, table.size());
+
+        int move = Move.make(3, 6, 1, 4, Move.CAPTURE | Move.PROMOTE);
+        table.store(42L, 9, TranspositionTable.UPPER, -99990, move);
+        long data = table.probe(42L);
+        assertTrue(data != 0);
+        assertEquals(move, TranspositionTable.move(data));
+        assertEquals(-99990, TranspositionTable.score(data));
+        assertEquals(9, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.UPPER, TranspositionTable.bound(data));
+
+        assertEquals(0, table.probe(43L));
+        table.clear();
+        assertEquals(0, table.probe(42L));
+    }
+
+    /**
+     * Verify a deeper entry survives a shallower one in the same slot until
+     * the next search
+     */
+    public void testDepthPreferred() {
+        TranspositionTable table = new TranspositionTable(1);
+        long a = 7L;
+        long b = 7L + (1L << 40);
+
+        table.store(a, 8, TranspositionTable.EXACT, 10, Move.NONE);
+        table.store(b, 3, TranspositionTable.EXACT, 20, Move.NONE);
+        assertTrue(table.probe(a) != 0);
+        assertEquals(0, table.probe(b));
+
+        table.newSearch();
+        table.store(b, 3, TranspositionTable.EXACT, 20, Move.NONE);
+        assertEquals(0, table.probe(a));
+        assertEquals(20, TranspositionTable.score(table.probe(b)));
+    }
+
+    /**
+     * Verify readers never see an entry mixed from two writers
+     */
+    public void testConcurrentAccess() throws InterruptedException {
+        final TranspositionTable table = new TranspositionTable(1);
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    Random rn = new Random(seed);
+                    for (int i = 0; i < 200000; i++) {
+                        // small key space so threads fight over slots
+                        long key = rn.nextInt(4096) * 0x9E3779B97F4A7C15L;
+                        int depth = (int) (key >>> 58) & 0x3F;
+                        int score = (int) (key >>> 40) & 0xFFFF;
+                        table.store(key, depth, TranspositionTable.EXACT, score, Move.NONE);
+
+                        long probe = rn.nextInt(4096) * 0x9E3779B97F4A7C15L;
+                        long data = table.probe(probe);
+                        if (data != 0 && (TranspositionTable.depth(data)
+                                != ((int) (probe >>> 58) & 0x3F)
+                                || TranspositionTable.score(data)
+                                != ((int) (probe >>> 40) & 0xFFFF))) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed[0]);
+    }
+}
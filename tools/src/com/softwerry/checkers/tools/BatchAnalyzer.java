@@ -0,0 +1,296 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tools;
+
+import com.softwerry.checkers.AlphaBetaStrategy;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import com.softwerry.checkers.TranspositionTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Offline analysis of many positions on a fork/join pool.
+ *
+ * A batch is split in halves down to single positions, so idle threads
+ * steal whole positions from busy ones. Inside a position every iteration
+ * searches the first root move alone and then the younger brothers in
+ * parallel with the score of the first as their bound.
+ */
+public final class BatchAnalyzer {
+
+    private static final int INFINITY = AlphaBetaStrategy.WIN + 1;
+
+    /**
+     * Best move and score of one position
+     */
+    public static final class Result {
+
+        public final int move;
+        /**
+         * for the player to move
+         */
+        public final int score;
+        public final int depth;
+
+        Result(int move, int score, int depth) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+        }
+
+        @Override
+        public String toString() {
+            return Move.toString(move) + " score " + score + " depth " + depth;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int depth;
+    private final ThreadLocal<AlphaBetaStrategy> searchers;
+
+    /**
+     * @param threads pool size
+     * @param depth search depth of every position
+     * @param tableMegabytes transposition table shared by all threads
+     */
+    public BatchAnalyzer(int threads, int depth, int tableMegabytes) {
+        final TranspositionTable table = new TranspositionTable(tableMegabytes);
+        this.pool = new ForkJoinPool(threads);
+        this.depth = depth;
+        this.searchers = new ThreadLocal<AlphaBetaStrategy>() {
+            @Override
+            protected AlphaBetaStrategy initialValue() {
+                return new AlphaBetaStrategy(AlphaBetaStrategy.MAX_PLY, 0, 0, table);
+            }
+        };
+    }
+
+    /**
+     * Analyse one position, the game is not modified
+     *
+     * @param e
+     * @return
+     */
+    public Result analyze(GameEngine e) {
+        return pool.invoke(new PositionTask(new GameEngine(e)));
+    }
+
+    /**
+     * Analyse positions in parallel, the games are not modified
+     *
+     * @param positions
+     * @return results in the order of positions
+     */
+    public List<Result> analyzeAll(List<GameEngine> positions) {
+        Result[] results = new Result[positions.size()];
+        pool.invoke(new BatchTask(positions, results, 0, positions.size()));
+        return Arrays.asList(results);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Splits a batch until single positions are left
+     */
+    private final class BatchTask extends RecursiveTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<GameEngine> positions;
+        private final Result[] results;
+        private final int from;
+        private final int to;
+
+        BatchTask(List<GameEngine> positions, Result[] results, int from, int to) {
+            this.positions = positions;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from == 1) {
+                results[from] = new PositionTask(new GameEngine(positions.get(from))).compute();
+                return null;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(positions, results, from, mid),
+                    new BatchTask(positions, results, mid, to));
+            return null;
+        }
+    }
+
+    /**
+     * Iterative deepening over the root moves of one position
+     */
+    private final class PositionTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final GameEngine engine;
+
+        PositionTask(GameEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        protected Result compute() {
+            int[] root = new int[MoveGenerator.capacity(engine.squaresPerSide)];
+            int count = MoveGenerator.generate(engine, root);
+            if (count == 0) {
+                return new Result(Move.NONE, -AlphaBetaStrategy.WIN, 0);
+            }
+
+            Result best = new Result(root[0], 0, 0);
+            List<MoveTask> brothers = new ArrayList<MoveTask>(count);
+            for (int d = 1; d <= depth; d++) {
+                // eldest brother first, its score bounds the others
+                engine.makeMove(root[0]);
+                int alpha = fromChild(
+                        searchers.get().searchScore(engine, d - 1, -INFINITY, INFINITY));
+                engine.unmakeMove();
+                int bestMove = root[0];
+
+                brothers.clear();
+                for (int i = 1; i < count; i++) {
+                    brothers.add(new MoveTask(engine, root[i], d - 1, alpha));
+                }
+                invokeAll(brothers);
+                for (MoveTask t : brothers) {
+                    int score = t.join();
+                    if (score > alpha) {
+                        alpha = score;
+                        bestMove = t.move;
+                    }
+                }
+
+                best = new Result(bestMove, alpha, d);
+                for (int i = 0; i < count; i++) {
+                    if (root[i] == bestMove) {
+                        root[i] = root[0];
+                        root[0] = bestMove;
+                        break;
+                    }
+                }
+                if (Math.abs(alpha) >= AlphaBetaStrategy.KNOWN_WIN) {
+                    break;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Score of one root move, searched on its own copy of the game
+     */
+    private final class MoveTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final GameEngine parent;
+        private final int move;
+        private final int depth;
+        private final int alpha;
+
+        MoveTask(GameEngine parent, int move, int depth, int alpha) {
+            this.parent = parent;
+            this.move = move;
+            this.depth = depth;
+            this.alpha = alpha;
+        }
+
+        @Override
+        protected Integer compute() {
+            GameEngine e = new GameEngine(parent);
+            e.makeMove(move);
+            // fails low for moves no better than alpha
+            return fromChild(searchers.get().searchScore(e, depth, -INFINITY, -alpha));
+        }
+    }
+
+    /**
+     * Score of a root move from the score of the position after it, win
+     * scores are one ply further away from the root
+     */
+    private static int fromChild(int score) {
+        if (score >= AlphaBetaStrategy.KNOWN_WIN) {
+            return -score + 1;
+        }
+        if (score <= -AlphaBetaStrategy.KNOWN_WIN) {
+            return -score - 1;
+        }
+        return -score;
+    }
+
+    /**
+     * Analyse random positions and report throughput
+     *
+     * usage: BatchAnalyzer [positions] [depth] [threads]
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        Random rn = new Random(1);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        List<GameEngine> positions = new ArrayList<GameEngine>(count);
+        while (positions.size() < count) {
+            GameEngine e = new GameEngine();
+            int plies = 4 + rn.nextInt(30);
+            for (int ply = 0; ply < plies; ply++) {
+                int n = MoveGenerator.generate(e, moves);
+                if (n == 0) {
+                    break;
+                }
+                e.makeMove(moves[rn.nextInt(n)]);
+            }
+            positions.add(new GameEngine(e));
+        }
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(threads, depth, 64);
+        long start = System.nanoTime();
+        List<Result> results = analyzer.analyzeAll(positions);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        analyzer.shutdown();
+
+        for (int i = 0; i < Math.min(10, results.size()); i++) {
+            System.out.println(i + ": " + results.get(i));
+        }
+        System.out.printf("%d positions, depth %d, %d threads, %.2f s, %.1f positions/s%n",
+                count, depth, threads, seconds, count / seconds);
+    }
+}
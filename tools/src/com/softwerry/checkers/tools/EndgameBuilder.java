@@ -0,0 +1,471 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tools;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.EndgameDatabase;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.MoveGenerator;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds an EndgameDatabase file by retrograde analysis.
+ *
+ * usage: EndgameBuilder [-pieces N] [-threads N] [-checkpoint seconds] file
+ *
+ * Slices are solved from the fewest checkers up, so every capture or
+ * promotion leads into a slice that is already known. Inside a slice a
+ * position is a win in k plies once a move leads to a loss in k - 1, and
+ * a loss in k once every move leads to a win in at most k - 1. Positions
+ * left open when nothing changes any more are draws. Past 127 plies the
+ * stored distance saturates, a saturated value counts as known on every
+ * later pass, so the position still gets the right win or loss.
+ *
+ * Every pass splits the slice into index ranges solved on all threads.
+ * Solved slices are kept as files in file.parts and read back mapped, the
+ * slice in progress is saved there every -checkpoint seconds. Running the
+ * same command again after the build was killed resumes from these files,
+ * they are removed once the database is written.
+ */
+public final class EndgameBuilder {
+
+    /**
+     * positions per index range
+     */
+    static final int CHUNK = 1 << 16;
+
+    private final int maxPieces;
+    private final List<int[]> slices;
+    private final File parts;
+    private final Map<Integer, ByteBuffer> solved = new HashMap<Integer, ByteBuffer>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long checkpointMillis = 60000;
+    /**
+     * longest win or loss found so far, over all slices
+     */
+    private int longest;
+
+    private ExecutorService pool;
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * @param maxPieces most checkers on the board
+     * @param parts directory for solved slices and checkpoints
+     */
+    public EndgameBuilder(int maxPieces, File parts) {
+        this.maxPieces = maxPieces;
+        this.parts = parts;
+        slices = EndgameDatabase.slices(maxPieces);
+    }
+
+    /**
+     * Solve every slice in order, skipping slices solved by an earlier run
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void build() throws IOException, InterruptedException {
+        if (!parts.isDirectory() && !parts.mkdirs()) {
+            throw new IOException("can not create " + parts);
+        }
+        pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int[] slice : slices) {
+                File done = sliceFile(slice, ".slice");
+                if (!done.exists()) {
+                    long begin = System.nanoTime();
+                    byte[] v = solve(slice);
+                    save(done, -1, v);
+                    sliceFile(slice, ".partial").delete();
+                    System.out.printf("slice %s %10d positions %8.2f s, longest %d plies%n",
+                            name(slice), v.length / 2, (System.nanoTime() - begin) / 1e9, longest);
+                }
+                ByteBuffer v = map(done);
+                solved.put(key(slice[0], slice[1], slice[2], slice[3]), v);
+                longest = Math.max(longest, longest(v));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Write the database from the solved slices
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException {
+        EndgameDatabase.writeHeader(out, maxPieces, slices);
+        byte[] buffer = new byte[CHUNK];
+        for (int[] slice : slices) {
+            InputStream in = new FileInputStream(sliceFile(slice, ".slice"));
+            try {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Remove the solved slices once the database is written
+     */
+    public void clean() {
+        for (int[] slice : slices) {
+            sliceFile(slice, ".slice").delete();
+        }
+        parts.delete();
+    }
+
+    /**
+     * Values of one slice, two bytes per position, red to move first
+     */
+    private byte[] solve(final int[] slice) throws IOException, InterruptedException {
+        long size = EndgameDatabase.sliceSize(slice[0], slice[1], slice[2], slice[3]);
+        if (size * 2 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("slice too large");
+        }
+        final byte[] v = new byte[(int) size * 2];
+        int plies = 1;
+        File partial = sliceFile(slice, ".partial");
+        if (partial.exists()) {
+            plies = load(partial, v);
+            System.out.printf("slice %s resumed at %d plies%n", name(slice), plies);
+        }
+        solved.put(key(slice[0], slice[1], slice[2], slice[3]), ByteBuffer.wrap(v));
+
+        // positions without moves are lost, the rest wait for a value
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        for (long from = 0; from < size; from += CHUNK) {
+            chunks.add(new Chunk(slice, (int) from, (int) Math.min(size, from + CHUNK), v));
+        }
+        run(chunks, 0);
+
+        long saved = System.currentTimeMillis();
+        int known = longest;
+        boolean changed = true;
+        for (; changed || plies <= known + 1; plies++) {
+            changed = run(chunks, plies);
+            if (changed) {
+                longest = Math.max(longest, plies);
+            }
+            if (System.currentTimeMillis() - saved >= checkpointMillis) {
+                save(partial, plies + 1, v);
+                saved = System.currentTimeMillis();
+            }
+        }
+        return v;
+    }
+
+    /**
+     * One pass over all chunks on the pool
+     *
+     * @param plies distance to solve, 0 to collect the open positions
+     * @return true if a position got its value
+     */
+    private boolean run(List<Chunk> chunks, final int plies) throws InterruptedException {
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (final Chunk chunk : chunks) {
+            if (plies == 0 || chunk.openCount > 0) {
+                tasks.add(new Callable<Boolean>() {
+                    public Boolean call() {
+                        return plies == 0 ? chunk.init() : chunk.pass(plies);
+                    }
+                });
+            }
+        }
+        boolean changed = false;
+        for (Future<Boolean> f : pool.invokeAll(tasks)) {
+            try {
+                changed |= f.get();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Index range of a slice with the positions in it that are still open
+     */
+    private final class Chunk {
+
+        private final int[] slice;
+        private final int from;
+        private final int to;
+        private final byte[] v;
+        private int[] open;
+        private int openCount;
+
+        Chunk(int[] slice, int from, int to, byte[] v) {
+            this.slice = slice;
+            this.from = from;
+            this.to = to;
+            this.v = v;
+        }
+
+        /**
+         * Value positions without moves, collect the rest. Values left by
+         * a checkpoint are kept
+         */
+        boolean init() {
+            Scratch s = scratch.get();
+            int[] list = new int[(to - from) * 2];
+            int count = 0;
+            for (int index = from; index < to; index++) {
+                EndgameDatabase.position(slice, index, s.position);
+                if (!EndgameDatabase.isValid(s.position)) {
+                    continue;
+                }
+                for (int stm = 0; stm < 2; stm++) {
+                    int entry = index * 2 + stm;
+                    if (v[entry] != 0) {
+                        continue;
+                    }
+                    s.position.sideToMove = stm == 0 ? GameEnum.RED : GameEnum.BLACK;
+                    if (MoveGenerator.generate(s.position, s.moves) == 0) {
+                        v[entry] = (byte) EndgameDatabase.loss(0);
+                    } else {
+                        list[count++] = entry;
+                    }
+                }
+            }
+            open = Arrays.copyOf(list, count);
+            openCount = count;
+            return false;
+        }
+
+        /**
+         * Solve open positions at one distance. Other threads write values
+         * of this distance meanwhile, they are never read in this pass
+         */
+        boolean pass(int plies) {
+            Scratch s = scratch.get();
+            boolean changed = false;
+            int kept = 0;
+            for (int i = 0; i < openCount; i++) {
+                int entry = open[i];
+                EndgameDatabase.position(slice, entry >> 1, s.position);
+                s.position.sideToMove = (entry & 1) == 0 ? GameEnum.RED : GameEnum.BLACK;
+                int value = value(s, plies);
+                if (value != 0) {
+                    v[entry] = (byte) value;
+                    changed = true;
+                } else {
+                    open[kept++] = entry;
+                }
+            }
+            openCount = kept;
+            return changed;
+        }
+    }
+
+    /**
+     * Boards and move buffer of one thread
+     */
+    private static final class Scratch {
+
+        final BitBoard position = new BitBoard();
+        final BitBoard child = new BitBoard();
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     * Win or loss in exactly plies, found from values of at most plies - 1
+     *
+     * @return 0 if the position is not decided yet at this distance
+     */
+    private int value(Scratch s, int plies) {
+        int count = MoveGenerator.generate(s.position, s.moves);
+        boolean allWins = true;
+        for (int i = 0; i < count; i++) {
+            s.child.copyFrom(s.position);
+            s.child.makeMove(s.moves[i]);
+            int v = lookup(s.child);
+            if (v != 0 && EndgameDatabase.plies(v) <= plies - 1) {
+                if (v < 0) {
+                    return EndgameDatabase.win(plies);
+                }
+            } else {
+                allWins = false;
+            }
+        }
+        return allWins ? EndgameDatabase.loss(plies) : 0;
+    }
+
+    /**
+     * Value of a position from slices solved so far, the side to move
+     * without checkers has lost
+     */
+    private int lookup(BitBoard b) {
+        int bk = Integer.bitCount(b.black & b.kings);
+        int bm = Integer.bitCount(b.black) - bk;
+        int rk = Integer.bitCount(b.red & b.kings);
+        int rm = Integer.bitCount(b.red) - rk;
+        if (b.sideToMove == GameEnum.BLACK ? bm + bk == 0 : rm + rk == 0) {
+            return EndgameDatabase.loss(0);
+        }
+        ByteBuffer v = solved.get(key(bm, bk, rm, rk));
+        return v.get((int) EndgameDatabase.index(b) * 2 + (b.sideToMove == GameEnum.BLACK ? 1 : 0));
+    }
+
+    private static int longest(ByteBuffer v) {
+        int longest = 0;
+        for (int i = 0; i < v.limit(); i++) {
+            byte b = v.get(i);
+            if (b != 0) {
+                longest = Math.max(longest, EndgameDatabase.plies(b));
+            }
+        }
+        return longest;
+    }
+
+    private File sliceFile(int[] slice, String suffix) {
+        return new File(parts, name(slice) + suffix);
+    }
+
+    private static String name(int[] slice) {
+        return "" + slice[0] + slice[1] + slice[2] + slice[3];
+    }
+
+    private static int key(int bm, int bk, int rm, int rk) {
+        return ((bm * 16 + bk) * 16 + rm) * 16 + rk;
+    }
+
+    /**
+     * Write values through a temporary file, so a kill leaves the old file
+     * or the new one
+     *
+     * @param plies next distance to solve, -1 for a solved slice
+     */
+    private static void save(File file, int plies, byte[] v) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            if (plies >= 0) {
+                out.writeInt(plies);
+            }
+            out.write(v);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("can not replace " + file);
+        }
+    }
+
+    /**
+     * Read a checkpoint of the slice in progress
+     *
+     * @return next distance to solve
+     */
+    private static int load(File file, byte[] v) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            int plies = in.readInt();
+            in.readFully(v);
+            return plies;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int pieces = 4;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long checkpoint = 60;
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-pieces")) {
+                pieces = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-checkpoint")) {
+                checkpoint = Long.parseLong(args[++i]);
+            } else {
+                file = args[i];
+            }
+        }
+        if (file == null) {
+            System.err.println("usage: EndgameBuilder [-pieces N] [-threads N] [-checkpoint seconds] file");
+            System.exit(2);
+        }
+
+        long begin = System.nanoTime();
+        EndgameBuilder builder = new EndgameBuilder(pieces, new File(file + ".parts"));
+        builder.threads = threads;
+        builder.checkpointMillis = checkpoint * 1000;
+        builder.build();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            builder.write(out);
+        } finally {
+            out.close();
+        }
+        builder.clean();
+        System.out.printf("%d pieces written to %s on %d threads in %.1f s%n",
+                pieces, file, threads, (System.nanoTime() - begin) / 1e9);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tools;
+
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.GameRecord;
+import com.softwerry.checkers.GameRecordReader;
+import com.softwerry.checkers.OpeningBook;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an OpeningBook from game records.
+ *
+ * usage: OpeningBookBuilder [-plies N] [-min N] [-size N] book records...
+ *
+ * Every move played in the first -plies plies of a game counts for the
+ * position it was played from, scored for the side that played it. Moves
+ * played in fewer than -min games are left out of the book.
+ */
+public final class OpeningBookBuilder {
+
+    private final int size;
+    private final int plies;
+    private final Map<Long, Map<Integer, OpeningBook.Entry>> positions
+            = new HashMap<Long, Map<Integer, OpeningBook.Entry>>();
+    private long games;
+
+    /**
+     * @param size board size of the games to use
+     * @param plies plies from the start of each game to use
+     */
+    public OpeningBookBuilder(int size, int plies) {
+        this.size = size;
+        this.plies = plies;
+    }
+
+    /**
+     * Count the opening moves of one game, games on other boards are
+     * skipped
+     *
+     * @param game
+     */
+    public void add(GameRecord game) {
+        if (game.size != size) {
+            return;
+        }
+        GameEngine e = new GameEngine(game.firstPlayer, game.size);
+        int length = Math.min(plies, game.length());
+        for (int ply = 0; ply < length; ply++) {
+            int move = game.move(ply);
+            long hash = e.getHash();
+            Map<Integer, OpeningBook.Entry> moves = positions.get(hash);
+            if (moves == null) {
+                moves = new HashMap<Integer, OpeningBook.Entry>();
+                positions.put(hash, moves);
+            }
+            OpeningBook.Entry entry = moves.get(move);
+            if (entry == null) {
+                entry = new OpeningBook.Entry(hash, move);
+                moves.put(move, entry);
+            }
+            entry.games++;
+            entry.points += game.result == GameEnum.PLAY ? 1
+                    : game.result == e.currentPlayer ? 2 : 0;
+            e.makeMove(move);
+        }
+        games++;
+    }
+
+    /**
+     * Write the moves played in at least minGames games
+     *
+     * @param out
+     * @param minGames
+     * @return number of entries written
+     * @throws IOException
+     */
+    public int write(OutputStream out, int minGames) throws IOException {
+        List<OpeningBook.Entry> entries = new ArrayList<OpeningBook.Entry>();
+        for (Map<Integer, OpeningBook.Entry> moves : positions.values()) {
+            for (OpeningBook.Entry entry : moves.values()) {
+                if (entry.games >= minGames) {
+                    entries.add(entry);
+                }
+            }
+        }
+        OpeningBook.write(out, size, entries);
+        return entries.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int plies = 12;
+        int minGames = 4;
+        int size = 8;
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-plies")) {
+                plies = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-min")) {
+                minGames = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-size")) {
+                size = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() < 2) {
+            System.err.println("usage: OpeningBookBuilder [-plies N] [-min N] [-size N] book records...");
+            System.exit(2);
+        }
+
+        long begin = System.nanoTime();
+        OpeningBookBuilder builder = new OpeningBookBuilder(size, plies);
+        GameRecord game = new GameRecord();
+        for (String file : files.subList(1, files.size())) {
+            GameRecordReader reader = new GameRecordReader(new FileInputStream(file));
+            try {
+                while (reader.read(game)) {
+                    builder.add(game);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(files.get(0)));
+        int entries;
+        try {
+            entries = builder.write(out, minGames);
+        } finally {
+            out.close();
+        }
+        System.out.printf("%d games, %d positions, %d book moves written to %s in %.2f s%n",
+                builder.games, builder.positions.size(), entries, files.get(0),
+                (System.nanoTime() - begin) / 1e9);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tools;
+
+import com.softwerry.checkers.BitBoard;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+
+/**
+ * Move generation correctness and speed harness. Counts the leaf nodes of
+ * the full game tree to a fixed depth from the start position.
+ *
+ * usage: Perft [depth] [-divide] [-bitboard] [-verify]
+ *
+ * -divide prints the count below every root move and needs a depth of
+ * at least 1, -bitboard walks the tree with BitBoard instead of GameEngine
+ * make/unmake, -verify checks every depth up to the given one against
+ * known counts.
+ */
+public final class Perft {
+
+    /**
+     * leaf counts from the start position with red to move, depth 0..11
+     */
+    static final long[] EXPECTED = {
+        1L, 7L, 49L, 379L, 2872L, 23582L, 189143L, 1585096L, 13019316L,
+        109895943L, 912060262L, 7698991557L
+    };
+
+    private final int[][] moves;
+    private final BitBoard[] boards;
+
+    public Perft(int maxDepth) {
+        moves = new int[maxDepth + 1][MoveGenerator.MAX_MOVES];
+        boards = new BitBoard[maxDepth + 1];
+        for (int i = 0; i <= maxDepth; i++) {
+            boards[i] = new BitBoard();
+        }
+    }
+
+    /**
+     * Leaf nodes below a game, played with makeMove/unmakeMove
+     *
+     * @param e
+     * @param depth
+     * @return
+     */
+    public long count(GameEngine e, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] list = moves[depth];
+        int n = MoveGenerator.generate(e, list);
+        if (depth == 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            e.makeMove(list[i]);
+            nodes += count(e, depth - 1);
+            e.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Leaf nodes below a packed position, copy-make on a board stack
+     *
+     * @param b
+     * @param depth
+     * @return
+     */
+    public long count(BitBoard b, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] list = moves[depth];
+        int n = MoveGenerator.generate(b, list);
+        if (depth == 1) {
+            return n;
+        }
+        BitBoard child = boards[depth];
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            child.copyFrom(b);
+            child.makeMove(list[i]);
+            nodes += count(child, depth - 1);
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        int depth = 8;
+        boolean divide = false;
+        boolean bitboard = false;
+        boolean verify = false;
+        for (String arg : args) {
+            if (arg.equals("-divide")) {
+                divide = true;
+            } else if (arg.equals("-bitboard")) {
+                bitboard = true;
+            } else if (arg.equals("-verify")) {
+                verify = true;
+            } else {
+                depth = Integer.parseInt(arg);
+            }
+        }
+        if (depth < 0 || divide && depth < 1) {
+            System.err.println("usage: Perft [depth] [-divide] [-bitboard] [-verify]");
+            System.err.println("depth must be at least 0, or 1 with -divide");
+            System.exit(2);
+        }
+
+        Perft perft = new Perft(depth);
+        GameEngine start = new GameEngine();
+        boolean failed = false;
+
+        if (divide) {
+            int[] root = new int[MoveGenerator.MAX_MOVES];
+            int n = MoveGenerator.generate(start, root);
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                long nodes;
+                if (bitboard) {
+                    BitBoard b = new BitBoard(start);
+                    b.makeMove(root[i]);
+                    nodes = perft.count(b, depth - 1);
+                } else {
+                    start.makeMove(root[i]);
+                    nodes = perft.count(start, depth - 1);
+                    start.unmakeMove();
+                }
+                total += nodes;
+                System.out.println(Move.toString(root[i]) + ": " + nodes);
+            }
+            System.out.println("total: " + total);
+            failed = depth < EXPECTED.length && total != EXPECTED[depth];
+        } else {
+            for (int d = verify ? 1 : depth; d <= depth; d++) {
+                long begin = System.nanoTime();
+                long nodes = bitboard
+                        ? perft.count(new BitBoard(start), d) : perft.count(start, d);
+                double seconds = (System.nanoTime() - begin) / 1e9;
+                String check = "";
+                if (d < EXPECTED.length) {
+                    check = nodes == EXPECTED[d] ? " ok" : " FAILED, expected " + EXPECTED[d];
+                    failed |= nodes != EXPECTED[d];
+                }
+                System.out.printf("perft %2d %14d nodes %8.3f s %12.0f nodes/s%s%n",
+                        d, nodes, seconds, nodes / Math.max(seconds, 1e-9), check);
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tools;
+
+import com.softwerry.checkers.AlphaBetaStrategy;
+import com.softwerry.checkers.BookStrategy;
+import com.softwerry.checkers.EndgameDatabase;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.GameRecord;
+import com.softwerry.checkers.GameRecordWriter;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import com.softwerry.checkers.MoveStrategy;
+import com.softwerry.checkers.OpeningBook;
+import com.softwerry.checkers.RandomStrategy;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless self-play between two strategies on a thread pool.
+ *
+ * usage: SelfPlay [-games N] [-threads N] [-opening N] [-maxplies N]
+ * [-record file] [-endgames file] [-book file] [strategyA] [strategyB]
+ *
+ * A strategy is "random" or "alphabeta:depth[:nodes[:millis]]". Sides
+ * alternate every game, -opening plays the first plies at random so
+ * deterministic strategies don't repeat the same game. A side without
+ * moves loses, a game reaching -maxplies is a draw. -record writes every
+ * game to a GameRecordWriter file, -endgames lets alphabeta players look
+ * up positions with few checkers in an EndgameBuilder database, -book
+ * lets strategyA play from an OpeningBookBuilder book.
+ */
+public final class SelfPlay {
+
+    private final String specA;
+    private final String specB;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int openingPlies = 4;
+    private int maxPlies = 200;
+    private GameRecordWriter records;
+    private EndgameDatabase endgames;
+    private OpeningBook book;
+
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicLong wins = new AtomicLong();
+    private final AtomicLong draws = new AtomicLong();
+    private final AtomicLong losses = new AtomicLong();
+    private final AtomicLong plies = new AtomicLong();
+
+    public SelfPlay(String specA, String specB) {
+        this.specA = specA;
+        this.specB = specB;
+    }
+
+    /**
+     * Build a strategy from its command line form
+     *
+     * @param spec "random" or "alphabeta:depth[:nodes[:millis]]"
+     * @param seed for random play
+     * @return
+     */
+    public static MoveStrategy create(String spec, long seed) {
+        String[] parts = spec.split(":");
+        if (parts[0].equals("random")) {
+            return new RandomStrategy(seed);
+        }
+        if (parts[0].equals("alphabeta")) {
+            int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 6;
+            long nodes = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+            long millis = parts.length > 3 ? Long.parseLong(parts[3]) : 0;
+            return new AlphaBetaStrategy(depth, nodes, millis);
+        }
+        throw new IllegalArgumentException("unknown strategy " + spec);
+    }
+
+    /**
+     * Play a number of games and wait for all of them
+     *
+     * @param games
+     * @throws IOException if a game could not be recorded
+     * @throws InterruptedException
+     */
+    public void run(final int games) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> workers = new ArrayList<Future<Void>>();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            workers.add(pool.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    try {
+                        playGames(seed, games);
+                    } finally {
+                        // no more games for anyone once a worker failed
+                        nextGame.set(games);
+                    }
+                    return null;
+                }
+            }));
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Take games from the shared counter until all of them are handed out
+     */
+    private void playGames(long seed, int games) throws IOException {
+        MoveStrategy a = create(specA, seed * 2);
+        MoveStrategy b = create(specB, seed * 2 + 1);
+        useEndgames(a);
+        useEndgames(b);
+        if (book != null) {
+            a = new BookStrategy(book, a);
+        }
+        Random rn = new Random(seed);
+        GameRecord moves = new GameRecord();
+        int game;
+        while ((game = nextGame.getAndIncrement()) < games) {
+            boolean aIsRed = game % 2 == 0;
+            GameEnum winner = play(aIsRed ? a : b, aIsRed ? b : a, rn, moves);
+            record(winner, aIsRed);
+            if (records != null) {
+                moves.result = winner;
+                write(moves);
+            }
+        }
+    }
+
+    /**
+     * Play one game from the start position
+     *
+     * @param record filled with the moves played
+     * @return winner, RED, BLACK or PLAY for a draw
+     */
+    private GameEnum play(MoveStrategy red, MoveStrategy black, Random rn,
+            GameRecord record) {
+        GameEngine e = new GameEngine(GameEnum.RED);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        record.clear();
+        record.size = e.squaresPerSide;
+        record.firstPlayer = e.currentPlayer;
+        int ply = 0;
+        try {
+            for (; ply < maxPlies; ply++) {
+                int move;
+                if (ply < openingPlies) {
+                    int count = MoveGenerator.generate(e, moves);
+                    move = count == 0 ? Move.NONE : moves[rn.nextInt(count)];
+                } else {
+                    move = (e.currentPlayer == GameEnum.RED ? red : black).selectMove(e);
+                }
+                if (move == Move.NONE) {
+                    return e.currentPlayer == GameEnum.RED ? GameEnum.BLACK : GameEnum.RED;
+                }
+                e.makeMove(move);
+                record.add(move);
+            }
+            return GameEnum.PLAY;
+        } finally {
+            plies.addAndGet(ply);
+        }
+    }
+
+    private void useEndgames(MoveStrategy s) {
+        if (endgames != null && s instanceof AlphaBetaStrategy) {
+            ((AlphaBetaStrategy) s).endgames = endgames;
+        }
+    }
+
+    private void write(GameRecord game) throws IOException {
+        synchronized (records) {
+            records.write(game);
+        }
+    }
+
+    private void record(GameEnum winner, boolean aIsRed) {
+        if (winner == GameEnum.PLAY) {
+            draws.incrementAndGet();
+        } else if ((winner == GameEnum.RED) == aIsRed) {
+            wins.incrementAndGet();
+        } else {
+            losses.incrementAndGet();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int games = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int opening = 4;
+        int maxPlies = 200;
+        String a = "alphabeta:4";
+        String b = "random";
+        String recordFile = null;
+        String endgameFile = null;
+        String bookFile = null;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-games")) {
+                games = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-opening")) {
+                opening = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-maxplies")) {
+                maxPlies = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-record")) {
+                recordFile = args[++i];
+            } else if (args[i].equals("-endgames")) {
+                endgameFile = args[++i];
+            } else if (args[i].equals("-book")) {
+                bookFile = args[++i];
+            } else if (positional++ == 0) {
+                a = args[i];
+            } else {
+                b = args[i];
+            }
+        }
+
+        SelfPlay selfPlay = new SelfPlay(a, b);
+        selfPlay.threads = threads;
+        selfPlay.openingPlies = opening;
+        selfPlay.maxPlies = maxPlies;
+        if (endgameFile != null) {
+            selfPlay.endgames = EndgameDatabase.open(new File(endgameFile));
+        }
+        if (bookFile != null) {
+            selfPlay.book = OpeningBook.open(new File(bookFile));
+        }
+        if (recordFile != null) {
+            selfPlay.records = new GameRecordWriter(new FileOutputStream(recordFile));
+        }
+
+        long start = System.nanoTime();
+        selfPlay.run(games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (selfPlay.records != null) {
+            selfPlay.records.close();
+        }
+
+        long plies = selfPlay.plies.get();
+        long played = selfPlay.wins.get() + selfPlay.draws.get() + selfPlay.losses.get();
+        System.out.printf("%s vs %s, %d games on %d threads in %.2f s%n",
+                a, b, played, threads, seconds);
+        System.out.printf("%.1f games/s, %.0f plies/s, %.1f plies per game%n",
+                played / seconds, plies / seconds, plies / (double) Math.max(played, 1));
+        System.out.printf("win %d, draw %d, loss %d%n",
+                selfPlay.wins.get(), selfPlay.draws.get(), selfPlay.losses.get());
+    }
+}
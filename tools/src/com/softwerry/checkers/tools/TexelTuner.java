@@ -0,0 +1,414 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Vitaliy Pavlenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.softwerry.checkers.tools;
+
+import com.softwerry.checkers.Evaluator;
+import com.softwerry.checkers.GameEngine;
+import com.softwerry.checkers.GameEnum;
+import com.softwerry.checkers.GameRecord;
+import com.softwerry.checkers.GameRecordReader;
+import com.softwerry.checkers.Move;
+import com.softwerry.checkers.MoveGenerator;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes Evaluator weights on positions from game records, Texel style:
+ * the evaluation mapped through a sigmoid should predict the game result,
+ * the mean squared error is minimised with Adam over shuffled mini-batches.
+ *
+ * usage: TexelTuner [-epochs N] [-batch N] [-rate X] [-threads N]
+ * [-skip N] [-k X] [-out file] records...
+ *
+ * Only quiet positions of 8x8 games are used, no capture for the player to
+ * move, from ply -skip on. Feature vectors from Evaluator.features are
+ * kept as sparse rows of primitive arrays, about 100 bytes per position.
+ * -k is the sigmoid scale, fitted to the starting weights when not given.
+ * -out writes the tuned weights one per line in Evaluator order.
+ */
+public final class TexelTuner {
+
+    private final int threads;
+    private final ExecutorService pool;
+
+    /**
+     * positions: result for red, 1 win, 0.5 draw, 0 loss, and the non-zero
+     * features of row i at start[i] until start[i + 1]
+     */
+    private int count;
+    private double[] results = new double[1 << 16];
+    private int[] start = new int[(1 << 16) + 1];
+    private short[] index = new short[1 << 20];
+    private short[] value = new short[1 << 20];
+
+    private final double[] weights = new double[Evaluator.WEIGHTS];
+    private double k = 1;
+
+    public TexelTuner(int threads) {
+        this.threads = threads;
+        pool = Executors.newFixedThreadPool(threads);
+        int[] w = Evaluator.DEFAULT.getWeights();
+        for (int i = 0; i < w.length; i++) {
+            weights[i] = w[i];
+        }
+    }
+
+    /**
+     * Add the quiet positions of one game
+     *
+     * @param game
+     * @param skip plies from the start to leave out
+     */
+    public void add(GameRecord game, int skip) {
+        if (game.size != 8) {
+            return;
+        }
+        double result = game.result == GameEnum.RED ? 1
+                : game.result == GameEnum.BLACK ? 0 : 0.5;
+        GameEngine e = new GameEngine(game.firstPlayer, game.size);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        double[] features = new double[Evaluator.WEIGHTS];
+        for (int ply = 0; ply <= game.length(); ply++) {
+            if (ply >= skip) {
+                int n = MoveGenerator.generate(e, moves);
+                if (n > 0 && !Move.isCapture(moves[0])) {
+                    Evaluator.features(e, n, features);
+                    addRow(features, result);
+                }
+            }
+            if (ply < game.length()) {
+                e.makeMove(game.move(ply));
+            }
+        }
+    }
+
+    private void addRow(double[] features, double result) {
+        if (count + 1 == results.length) {
+            results = Arrays.copyOf(results, count * 2);
+            start = Arrays.copyOf(start, count * 2 + 1);
+        }
+        int at = start[count];
+        if (at + features.length > index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+            value = Arrays.copyOf(value, value.length * 2);
+        }
+        for (int i = 0; i < features.length; i++) {
+            if (features[i] != 0) {
+                index[at] = (short) i;
+                value[at++] = (short) features[i];
+            }
+        }
+        results[count++] = result;
+        start[count] = at;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Evaluation of a position from red's side
+     */
+    private double evaluate(int row, double[] w) {
+        double score = 0;
+        for (int i = start[row]; i < start[row + 1]; i++) {
+            score += w[index[i]] * value[i];
+        }
+        return score;
+    }
+
+    private double sigmoid(double score) {
+        return 1 / (1 + Math.pow(10, -k * score / 400));
+    }
+
+    /**
+     * Mean squared error over all positions
+     *
+     * @return
+     */
+    public double error() throws InterruptedException {
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+        for (int t = 0; t < threads; t++) {
+            final int from = (int) ((long) count * t / threads);
+            final int to = (int) ((long) count * (t + 1) / threads);
+            tasks.add(new Callable<Double>() {
+                public Double call() {
+                    double sum = 0;
+                    for (int row = from; row < to; row++) {
+                        double d = results[row] - sigmoid(evaluate(row, weights));
+                        sum += d * d;
+                    }
+                    return sum;
+                }
+            });
+        }
+        double sum = 0;
+        for (double part : invokeAll(tasks)) {
+            sum += part;
+        }
+        return sum / count;
+    }
+
+    /**
+     * Sigmoid scale that best fits the current weights, golden section
+     * search
+     *
+     * @return
+     */
+    public double fitK() throws InterruptedException {
+        double lo = 0.05;
+        double hi = 5;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 30; i++) {
+            double a = hi - ratio * (hi - lo);
+            double b = lo + ratio * (hi - lo);
+            k = a;
+            double errorA = error();
+            k = b;
+            double errorB = error();
+            if (errorA < errorB) {
+                hi = b;
+            } else {
+                lo = a;
+            }
+        }
+        k = (lo + hi) / 2;
+        return k;
+    }
+
+    /**
+     * One pass over the positions in shuffled mini-batches
+     *
+     * @param batch positions per step
+     * @param rate Adam step size in weight units
+     * @param adam first and second moment estimates and the step count
+     * @param rn
+     */
+    public void epoch(int batch, double rate, Adam adam, Random rn) throws InterruptedException {
+        final int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = rn.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        final double[][] partial = new double[threads][Evaluator.WEIGHTS];
+        double[] gradient = new double[Evaluator.WEIGHTS];
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+        for (int from = 0; from < count; from += batch) {
+            int to = Math.min(count, from + batch);
+            tasks.clear();
+            for (int t = 0; t < threads; t++) {
+                final double[] g = partial[t];
+                final int lo = from + (int) ((long) (to - from) * t / threads);
+                final int hi = from + (int) ((long) (to - from) * (t + 1) / threads);
+                tasks.add(new Callable<Double>() {
+                    public Double call() {
+                        Arrays.fill(g, 0);
+                        double scale = k * Math.log(10) / 400;
+                        for (int n = lo; n < hi; n++) {
+                            int row = order[n];
+                            double p = sigmoid(evaluate(row, weights));
+                            // d/dw of (result - p)^2
+                            double d = -2 * (results[row] - p) * p * (1 - p) * scale;
+                            for (int i = start[row]; i < start[row + 1]; i++) {
+                                g[index[i]] += d * value[i];
+                            }
+                        }
+                        return 0.0;
+                    }
+                });
+            }
+            invokeAll(tasks);
+            Arrays.fill(gradient, 0);
+            for (double[] g : partial) {
+                for (int i = 0; i < g.length; i++) {
+                    gradient[i] += g[i];
+                }
+            }
+            for (int i = 0; i < gradient.length; i++) {
+                gradient[i] /= to - from;
+            }
+            adam.step(weights, gradient, rate);
+        }
+    }
+
+    /**
+     * Adam optimiser state
+     */
+    static final class Adam {
+
+        private static final double BETA1 = 0.9;
+        private static final double BETA2 = 0.999;
+        private static final double EPSILON = 1e-12;
+
+        private final double[] m;
+        private final double[] v;
+        private int t;
+
+        Adam(int size) {
+            m = new double[size];
+            v = new double[size];
+        }
+
+        void step(double[] w, double[] gradient, double rate) {
+            t++;
+            double c1 = 1 - Math.pow(BETA1, t);
+            double c2 = 1 - Math.pow(BETA2, t);
+            for (int i = 0; i < w.length; i++) {
+                m[i] = BETA1 * m[i] + (1 - BETA1) * gradient[i];
+                v[i] = BETA2 * v[i] + (1 - BETA2) * gradient[i] * gradient[i];
+                w[i] -= rate * (m[i] / c1) / (Math.sqrt(v[i] / c2) + EPSILON);
+            }
+        }
+    }
+
+    /**
+     * Tuned weights rounded for Evaluator
+     *
+     * @return
+     */
+    public int[] getWeights() {
+        int[] w = new int[weights.length];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = (int) Math.round(weights[i]);
+        }
+        return w;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+        List<T> values = new ArrayList<T>();
+        for (Future<T> f : pool.invokeAll(tasks)) {
+            try {
+                values.add(f.get());
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int epochs = 10;
+        int batch = 16384;
+        double rate = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int skip = 4;
+        double k = 0;
+        String out = null;
+        List<String> files = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-epochs")) {
+                epochs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-batch")) {
+                batch = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-rate")) {
+                rate = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-skip")) {
+                skip = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-k")) {
+                k = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-out")) {
+                out = args[++i];
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("usage: TexelTuner [-epochs N] [-batch N] [-rate X] [-threads N]"
+                    + " [-skip N] [-k X] [-out file] records...");
+            System.exit(2);
+        }
+
+        long begin = System.nanoTime();
+        TexelTuner tuner = new TexelTuner(threads);
+        GameRecord game = new GameRecord();
+        for (String file : files) {
+            GameRecordReader reader = new GameRecordReader(new FileInputStream(file));
+            try {
+                while (reader.read(game)) {
+                    tuner.add(game, skip);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        System.out.printf("%d positions loaded in %.1f s%n",
+                tuner.getCount(), (System.nanoTime() - begin) / 1e9);
+
+        if (k > 0) {
+            tuner.k = k;
+        } else {
+            System.out.printf("k %.4f%n", tuner.fitK());
+        }
+        System.out.printf("start error %.6f%n", tuner.error());
+
+        Adam adam = new Adam(Evaluator.WEIGHTS);
+        Random rn = new Random(1);
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long t = System.nanoTime();
+            tuner.epoch(batch, rate, adam, rn);
+            double seconds = (System.nanoTime() - t) / 1e9;
+            System.out.printf("epoch %d error %.6f, %.1f s, %.0f positions/s%n",
+                    epoch, tuner.error(), seconds, tuner.getCount() / seconds);
+        }
+        tuner.shutdown();
+
+        int[] w = tuner.getWeights();
+        System.out.printf("man %d, king %d, advance %d, back rank %d, mobility %d%n",
+                w[Evaluator.MAN], w[Evaluator.KING], w[Evaluator.ADVANCE],
+                w[Evaluator.BACK_RANK], w[Evaluator.MOBILITY]);
+        if (out != null) {
+            PrintWriter writer = new PrintWriter(new FileWriter(out));
+            try {
+                for (int v : w) {
+                    writer.println(v);
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}